@@ -0,0 +1,287 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** The encodings of stored blobs.  An encoded blob starts with a
+ *  header of the four bytes of MAGIC followed by a codec byte, STORE
+ *  or DEFLATE, and then the contents, as they are or compressed; or
+ *  DELTA, the SHA1 of a base blob, and compressed Delta instructions
+ *  building the contents from the base; or CHUNKED, a count and the
+ *  SHA1 and length of each of the blobs whose concatenation is the
+ *  contents, making a manifest of chunks.  A blob without the header
+ *  holds its contents as they are; blobs are written that way when
+ *  compression does not pay, so that they can be linked or transferred
+ *  into the working directory unchanged, unless the contents
+ *  themselves start with MAGIC.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class BlobCodec {
+    /** First four bytes of an encoded blob. */
+    static final int MAGIC = 0x00476c62;
+    /** Size of the header of an encoded blob. */
+    static final int HEADER = 5;
+    /** Codec of contents stored as they are. */
+    static final byte STORE = 0;
+    /** Codec of contents compressed by Deflater. */
+    static final byte DEFLATE = 1;
+    /** Codec of contents built from a base blob by a delta. */
+    static final byte DELTA = 2;
+    /** Codec of contents that are a concatenation of chunks. */
+    static final byte CHUNKED = 3;
+    /** Size of the header of a delta, including its base's SHA1. */
+    static final int DELTA_HEADER = HEADER + ObjectId.LENGTH;
+    /** Least fraction, in sixteenths, of its size that a sample of a
+     *  file must shrink by for the file to be compressed. */
+    private static final int MIN_SAVING = 1;
+
+    /** Writes the contents of SOURCE to TARGET, compressed at LEVEL,
+     *  which is a Deflater level, unless compression does not pay:
+     *  0 stores everything, and otherwise the first BUFFER_SIZE bytes
+     *  are compressed first as a sample.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static void encode(File source, File target, int level) {
+        try {
+            byte[] head = readHead(source);
+            boolean compress = level != 0 && pays(head, level);
+            if (compress) {
+                try (InputStream in = new FileInputStream(source);
+                     DataOutputStream out = new DataOutputStream(
+                         new FileOutputStream(target))) {
+                    out.writeInt(MAGIC);
+                    out.writeByte(DEFLATE);
+                    Deflater deflater = new Deflater(level);
+                    try (OutputStream deflated = new DeflaterOutputStream(
+                             out, deflater, Utils.BUFFER_SIZE)) {
+                        Utils.copy(in, deflated);
+                    } finally {
+                        deflater.end();
+                    }
+                }
+                if (target.length() < source.length()) {
+                    return;
+                }
+            }
+            try (InputStream in = new FileInputStream(source);
+                 DataOutputStream out = new DataOutputStream(
+                     new FileOutputStream(target))) {
+                if (startsWithMagic(head)) {
+                    out.writeInt(MAGIC);
+                    out.writeByte(STORE);
+                }
+                Utils.copy(in, out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes CONTENTS to TARGET, compressed at LEVEL if that makes
+     *  them smaller.  Throws IllegalArgumentException in case of
+     *  problems. */
+    static void encode(byte[] contents, File target, int level) {
+        try (DataOutputStream out = new DataOutputStream(
+                 new FileOutputStream(target))) {
+            if (level != 0) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                Deflater deflater = new Deflater(level);
+                try (OutputStream deflated = new DeflaterOutputStream(
+                         compressed, deflater)) {
+                    deflated.write(contents);
+                } finally {
+                    deflater.end();
+                }
+                if (compressed.size() + HEADER < contents.length) {
+                    out.writeInt(MAGIC);
+                    out.writeByte(DEFLATE);
+                    compressed.writeTo(out);
+                    return;
+                }
+            }
+            if (startsWithMagic(contents)) {
+                out.writeInt(MAGIC);
+                out.writeByte(STORE);
+            }
+            out.write(contents);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes to TARGET a manifest of the chunks named SHAS, whose
+     *  lengths are LENGTHS.  Throws IllegalArgumentException in case
+     *  of problems. */
+    static void writeManifest(List<ObjectId> shas, List<Integer> lengths,
+                              File target) {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(target),
+                                          Utils.BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeByte(CHUNKED);
+            out.writeInt(shas.size());
+            for (int i = 0; i < shas.size(); i += 1) {
+                out.write(shas.get(i).toBytes());
+                out.writeInt(lengths.get(i));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns true iff the stored blob whose first bytes are HEAD is a
+     *  manifest of chunks. */
+    static boolean isChunked(byte[] head) {
+        return startsWithMagic(head) && head[4] == CHUNKED;
+    }
+
+    /** Returns the SHA1s of the chunks of the manifest read from IN,
+     *  which is just past the manifest's header. */
+    static List<ObjectId> chunks(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int count = data.readInt();
+        List<ObjectId> result = new ArrayList<ObjectId>(count);
+        byte[] sha = new byte[ObjectId.LENGTH];
+        for (int i = 0; i < count; i += 1) {
+            data.readFully(sha);
+            data.readInt();
+            result.add(ObjectId.fromBytes(sha, 0));
+        }
+        return result;
+    }
+
+    /** Writes to TARGET a delta building the contents TARGETCONTENTS
+     *  from the contents BASE of the blob named BASESHA, compressing
+     *  its instructions at LEVEL. */
+    static void writeDelta(ByteBuffer base, ObjectId baseSha,
+                           ByteBuffer targetContents, File target,
+                           int level) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                 new FileOutputStream(target))) {
+            out.writeInt(MAGIC);
+            out.writeByte(DELTA);
+            out.write(baseSha.toBytes());
+            Deflater deflater = new Deflater(level);
+            try (OutputStream deflated = new DeflaterOutputStream(
+                     out, deflater, Utils.BUFFER_SIZE)) {
+                Delta.write(base, targetContents, deflated);
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    /** Returns true iff the stored blob whose first bytes are HEAD is a
+     *  delta. */
+    static boolean isDelta(byte[] head) {
+        return startsWithMagic(head) && head[4] == DELTA
+            && head.length >= DELTA_HEADER;
+    }
+
+    /** Returns the SHA1 of the base of the delta whose first bytes are
+     *  HEAD. */
+    static ObjectId deltaBase(byte[] head) {
+        return ObjectId.fromBytes(head, HEADER);
+    }
+
+    /** Returns a stream of the instructions of a delta read from IN,
+     *  which is just past the delta's header. */
+    static InputStream deltaInstructions(InputStream in) {
+        return inflating(in);
+    }
+
+    /** Returns true iff the stored blob whose first bytes are HEAD
+     *  holds its contents as they are, with no header. */
+    static boolean isRaw(byte[] head) {
+        return !startsWithMagic(head);
+    }
+
+    /** Returns a stream of the contents of the stored blob read from
+     *  IN, decompressing as it is read. */
+    static InputStream decode(InputStream in) throws IOException {
+        BufferedInputStream buffered =
+            new BufferedInputStream(in, Utils.BUFFER_SIZE);
+        buffered.mark(HEADER);
+        byte[] head = buffered.readNBytes(HEADER);
+        if (!startsWithMagic(head)) {
+            buffered.reset();
+            return buffered;
+        }
+        switch (head[4]) {
+        case STORE:
+            return buffered;
+        case DEFLATE:
+            return inflating(buffered);
+        default:
+            throw new IOException("cannot decode codec " + head[4]);
+        }
+    }
+
+    /** Returns a stream inflating what is read from IN, releasing its
+     *  Inflater when closed. */
+    private static InputStream inflating(InputStream in) {
+        return new InflaterInputStream(in, new Inflater(),
+                                       Utils.BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inf.end();
+            }
+        };
+    }
+
+    /** Returns the first DELTA_HEADER bytes of the stored blob FILE,
+     *  or all of it if it is shorter. */
+    static byte[] header(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return in.readNBytes(DELTA_HEADER);
+        }
+    }
+
+    /** Returns true iff HEAD begins with MAGIC. */
+    private static boolean startsWithMagic(byte[] head) {
+        return head.length >= HEADER
+            && ((head[0] & 0xff) << 24 | (head[1] & 0xff) << 16
+                | (head[2] & 0xff) << 8 | (head[3] & 0xff)) == MAGIC;
+    }
+
+    /** Returns the first BUFFER_SIZE bytes of FILE. */
+    private static byte[] readHead(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return in.readNBytes(Utils.BUFFER_SIZE);
+        }
+    }
+
+    /** Returns true iff SAMPLE shrinks by at least MIN_SAVING
+     *  sixteenths when compressed at LEVEL. */
+    private static boolean pays(byte[] sample, int level) {
+        if (sample.length == 0) {
+            return false;
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(level);
+        try (OutputStream out = new DeflaterOutputStream(result, deflater)) {
+            out.write(sample);
+        } catch (IOException excp) {
+            return false;
+        } finally {
+            deflater.end();
+        }
+        return result.size() + HEADER
+            <= sample.length - sample.length * MIN_SAVING / 16;
+    }
+}
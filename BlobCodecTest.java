@@ -0,0 +1,82 @@
+package gitlet;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ucb.junit.textui;
+
+public class BlobCodecTest {
+
+    /** Returns the contents of FILE after encoding at LEVEL and
+     *  decoding, checking that the encoding is raw iff RAW. */
+    private static byte[] roundTrip(byte[] contents, int level, boolean raw)
+        throws IOException {
+        File dir = Files.createTempDirectory("codec").toFile();
+        File source = new File(dir, "source");
+        File stored = new File(dir, "stored");
+        Utils.writeContents(source, contents);
+        BlobCodec.encode(source, stored, level);
+        assertEquals(raw, BlobCodec.isRaw(BlobCodec.header(stored)));
+        try (InputStream in = BlobCodec.decode(
+                 new FileInputStream(stored))) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    public void compressesOnlyWhenItPays() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i += 1) {
+            text.append("line ").append(i % 17).append(" of a log\n");
+        }
+        byte[] log = text.toString().getBytes();
+        assertArrayEquals(log, roundTrip(log, 6, false));
+        assertArrayEquals(log, roundTrip(log, 0, true));
+        byte[] noise = new byte[200000];
+        new Random(61).nextBytes(noise);
+        assertArrayEquals(noise, roundTrip(noise, 9, true));
+        byte[] empty = new byte[0];
+        assertArrayEquals(empty, roundTrip(empty, 6, true));
+    }
+
+    @Test
+    public void escapesContentsLikeAHeader() throws IOException {
+        byte[] tricky = { 0, 'G', 'l', 'b', BlobCodec.DEFLATE, 'x' };
+        assertArrayEquals(tricky, roundTrip(tricky, 6, false));
+    }
+
+    @Test
+    public void checksOutCompressedBlobs() throws IOException {
+        File dir = Files.createTempDirectory("store").toFile();
+        new File(dir, BlobStore.LOOSE_DIR).mkdir();
+        byte[] contents = "again and again\n".repeat(5000).getBytes();
+        File staged = new File(dir, "staged");
+        File source = new File(dir, "source");
+        Utils.writeContents(source, contents);
+        BlobCodec.encode(source, staged, 6);
+        assertTrue(staged.length() < contents.length / 10);
+        ObjectId sha = ObjectId.hash(contents);
+        new BlobStore(dir).moveIn(sha, staged);
+        for (int pass = 0; pass < 2; pass += 1) {
+            for (BlobStore.Mode mode : BlobStore.Mode.values()) {
+                File work = new File(dir, mode + "-" + pass);
+                new BlobStore(dir, mode).checkout(sha, work);
+                assertArrayEquals(contents, Utils.readContents(work));
+            }
+            new BlobStore(dir).repack();
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(textui.runClasses(BlobCodecTest.class));
+    }
+
+}
@@ -0,0 +1,611 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+
+/** The blobs of a repository. A blob is either loose, in a file
+ *  of .blobs named by its SHA1, or in one of the packs of .packs.
+ *  Lookups try the packs first, then the loose files.  A large file
+ *  may be stored as a manifest of content-defined chunks, each a blob
+ *  of its own, so that versions of the file, and other files, share
+ *  the chunks they have in common.  Blobs are
+ *  written into the working directory in one of the ways of Mode,
+ *  chosen per repository.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class BlobStore {
+    /** Name of the directory of loose blobs. */
+    static final String LOOSE_DIR = ".blobs";
+    /** Name of the directory of packs. */
+    static final String PACK_DIR = ".packs";
+    /** Name of the file of the heights of the bases of deltas. */
+    static final String HEIGHTS = "delta-heights";
+
+    /** Ways of writing a blob into a working file. */
+    enum Mode {
+        /** Streamed through a buffer in the Java heap. */
+        COPY,
+        /** Transferred from file channel to file channel, by the
+         *  kernel where the platform allows. */
+        CHANNEL,
+        /** Hard-linked to the loose blob, which is made read-only, so
+         *  that the working file must be replaced rather than edited in
+         *  place.  Packed blobs, and blobs on another file system, are
+         *  transferred as by CHANNEL. */
+        HARDLINK;
+
+        /** Returns the mode named NAME, in any case. */
+        static Mode of(String name) {
+            try {
+                return valueOf(name.toUpperCase());
+            } catch (IllegalArgumentException excp) {
+                throw new IllegalArgumentException("bad checkout mode "
+                                                   + name);
+            }
+        }
+    }
+
+    /** A store of the blobs kept under the gitlet directory HOME,
+     *  checked out by channel transfer. */
+    BlobStore(File home) {
+        this(home, Mode.CHANNEL);
+    }
+
+    /** A store of the blobs kept under the gitlet directory HOME,
+     *  checked out in the way MODE. */
+    BlobStore(File home, Mode mode) {
+        _loose = new File(home, LOOSE_DIR);
+        _packDir = new File(home, PACK_DIR);
+        _heightsFile = new File(home, HEIGHTS);
+        _mode = mode;
+    }
+
+    /** Returns true iff the blob named SHA is in this store. */
+    boolean contains(ObjectId sha) {
+        return isPacked(sha) || new File(_loose, sha.toString()).isFile();
+    }
+
+    /** Returns a stream of the contents of the blob named SHA,
+     *  decoded as it is read. Throws IllegalArgumentException if there
+     *  is no such blob. */
+    InputStream open(ObjectId sha) {
+        Trace.count(Trace.Counter.BLOBS_OPENED, 1);
+        try {
+            BufferedInputStream in =
+                new BufferedInputStream(openStored(sha), Utils.BUFFER_SIZE);
+            in.mark(BlobCodec.DELTA_HEADER);
+            byte[] head = in.readNBytes(BlobCodec.DELTA_HEADER);
+            if (BlobCodec.isDelta(head)) {
+                return new Delta.Reader(resolve(BlobCodec.deltaBase(head)),
+                                        BlobCodec.deltaInstructions(in));
+            }
+            in.reset();
+            if (BlobCodec.isChunked(head)) {
+                in.skipNBytes(BlobCodec.HEADER);
+                List<ObjectId> chunks;
+                try (InputStream manifest = in) {
+                    chunks = BlobCodec.chunks(manifest);
+                }
+                Iterator<ObjectId> next = chunks.iterator();
+                return new SequenceInputStream(new Enumeration<InputStream>() {
+                    @Override
+                    public boolean hasMoreElements() {
+                        return next.hasNext();
+                    }
+
+                    @Override
+                    public InputStream nextElement() {
+                        return open(next.next());
+                    }
+                });
+            }
+            return BlobCodec.decode(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the contents of the blob named SHA for random access:
+     *  mapped straight from the store if it is stored as it is, and
+     *  otherwise decoded into a temporary file that is mapped.  The
+     *  RESOLVED most recently resolved blobs are kept, so that the
+     *  base of a run of deltas is decoded once. */
+    ByteBuffer resolve(ObjectId sha) throws IOException {
+        ByteBuffer result = _resolved.get(sha);
+        if (result != null) {
+            return result;
+        }
+        File loose = new File(_loose, sha.toString());
+        for (PackFile pack : packs()) {
+            int k = pack.find(sha);
+            if (k >= 0) {
+                result = isRaw(pack.open(k)) ? pack.map(k) : null;
+                break;
+            }
+        }
+        if (result == null && loose.isFile()
+            && BlobCodec.isRaw(BlobCodec.header(loose))) {
+            result = map(loose);
+        }
+        if (result == null) {
+            File tmp = File.createTempFile("gitlet", ".blob");
+            try {
+                Utils.writeContents(tmp, open(sha));
+                result = map(tmp);
+            } finally {
+                tmp.delete();
+            }
+        }
+        _resolved.put(sha, result);
+        return result;
+    }
+
+    /** Rewrites the blob named SHA as a loose delta against the blob
+     *  named BASE, compressing its instructions at LEVEL, if SHA is
+     *  stored whole, at least MIN_DELTA bytes long, and the delta is
+     *  less than half its size, and if the chain of deltas from BASE
+     *  does not lead back to SHA.  Deltas already made against SHA get
+     *  longer chains too, so the rewrite is also refused if any blob
+     *  would then be more than Delta.MAX_DEPTH deltas from one stored
+     *  whole.  Manifests of chunks are left as they are, and are not
+     *  used as bases.  A packed blob is rewritten only when REPACKING,
+     *  and then only once, as the loose delta that the next repack
+     *  keeps in place of its packed copy.  Returns true iff the blob
+     *  was rewritten. */
+    boolean deltify(ObjectId sha, ObjectId base, int level,
+                    boolean repacking) {
+        if (sha.equals(base) || !contains(sha) || !contains(base)) {
+            return false;
+        }
+        if (isPacked(sha)
+            && (!repacking || new File(_loose, sha.toString()).isFile())) {
+            return false;
+        }
+        File tmp = new File(_loose, sha + ".delta");
+        try {
+            long size = storedLength(sha);
+            byte[] header = storedHeader(sha);
+            if (size < MIN_DELTA || size > Integer.MAX_VALUE
+                || BlobCodec.isDelta(header) || BlobCodec.isChunked(header)) {
+                return false;
+            }
+            int above = height(sha) + 1;
+            List<ObjectId> chain = new ArrayList<ObjectId>();
+            for (ObjectId link = base; ; ) {
+                if (link.equals(sha)
+                    || above + chain.size() > Delta.MAX_DEPTH) {
+                    return false;
+                }
+                byte[] head = storedHeader(link);
+                if (BlobCodec.isChunked(head)) {
+                    return false;
+                }
+                chain.add(link);
+                if (!BlobCodec.isDelta(head)) {
+                    break;
+                }
+                link = BlobCodec.deltaBase(head);
+            }
+            BlobCodec.writeDelta(resolve(base), base, resolve(sha), tmp,
+                                 level);
+            if (tmp.length() >= size / 2) {
+                return false;
+            }
+            Files.move(tmp.toPath(), new File(_loose, sha.toString()).toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+            for (int i = 0; i < chain.size(); i += 1) {
+                raiseHeight(chain.get(i), above + i);
+            }
+            return true;
+        } catch (IOException excp) {
+            return false;
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /** Returns the most deltas that are resolved on the way to the
+     *  blob named SHA from those stored as deltas against it, directly
+     *  or through other deltas: 0 if there are none. */
+    int height(ObjectId sha) {
+        Integer result = heights().get(sha);
+        return result == null ? 0 : result;
+    }
+
+    /** Records that the height of the blob named SHA is at least
+     *  HEIGHT, appending to the file of heights if it rises. */
+    private void raiseHeight(ObjectId sha, int height) throws IOException {
+        if (height(sha) >= height) {
+            return;
+        }
+        byte[] record = new byte[HEIGHT_RECORD];
+        sha.copyTo(record, 0);
+        ByteBuffer.wrap(record).putInt(ObjectId.LENGTH, height);
+        try (FileOutputStream out = new FileOutputStream(_heightsFile,
+                                                         true)) {
+            out.write(record);
+        }
+        heights().put(sha, height);
+    }
+
+    /** Returns the height of each blob that is a base of deltas, read
+     *  on first use from the file of heights, whose records each hold
+     *  a SHA1 and a height, later records overriding earlier ones. */
+    private HashMap<ObjectId, Integer> heights() {
+        if (_heights == null) {
+            _heights = new HashMap<ObjectId, Integer>();
+            if (_heightsFile.isFile()) {
+                ByteBuffer records =
+                    ByteBuffer.wrap(Utils.readContents(_heightsFile));
+                for (int p = 0; p + HEIGHT_RECORD <= records.limit();
+                     p += HEIGHT_RECORD) {
+                    _heights.put(ObjectId.fromBuffer(records, p),
+                                 records.getInt(p + ObjectId.LENGTH));
+                }
+            }
+        }
+        return _heights;
+    }
+
+    /** Returns a stream of the blob named SHA as it is stored, perhaps
+     *  encoded. Throws IllegalArgumentException if there is no such
+     *  blob. */
+    InputStream openStored(ObjectId sha) {
+        for (PackFile pack : packs()) {
+            int k = pack.find(sha);
+            if (k >= 0) {
+                return pack.open(k);
+            }
+        }
+        try {
+            return new FileInputStream(new File(_loose, sha.toString()));
+        } catch (FileNotFoundException excp) {
+            throw new IllegalArgumentException("no blob " + sha);
+        }
+    }
+
+    /** Moves the file SOURCE into this store as the loose blob named
+     *  SHA with a single atomic rename, or deletes SOURCE if the store
+     *  already holds the blob. */
+    void moveIn(ObjectId sha, File source) {
+        if (contains(sha)) {
+            source.delete();
+            return;
+        }
+        Path target = new File(_loose, sha.toString()).toPath();
+        try {
+            try {
+                Files.move(source.toPath(), target,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException excp) {
+                Path tmp = new File(_loose, sha + ".tmp").toPath();
+                Files.copy(source.toPath(), tmp,
+                           StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                source.delete();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes to MANIFEST a manifest of the chunks of the file SOURCE,
+     *  adding to this store, compressed at LEVEL, each chunk it does
+     *  not already hold.  Chunks are cut and read BATCH at a time, then
+     *  hashed and written in parallel on POOL, or in place if POOL is
+     *  null.  Throws IllegalArgumentException in case of problems. */
+    void writeChunked(File source, File manifest, int level,
+                      ForkJoinPool pool) {
+        List<ObjectId> shas = new ArrayList<ObjectId>();
+        List<Integer> lengths = new ArrayList<Integer>();
+        List<byte[]> batch = new ArrayList<byte[]>();
+        try (InputStream in = new FileInputStream(source)) {
+            Chunker chunker = new Chunker(in);
+            byte[] chunk;
+            do {
+                chunk = chunker.next();
+                if (chunk != null) {
+                    batch.add(chunk);
+                    lengths.add(chunk.length);
+                }
+                if (batch.size() == BATCH
+                    || (chunk == null && !batch.isEmpty())) {
+                    shas.addAll(addChunks(batch, level, pool));
+                    batch.clear();
+                }
+            } while (chunk != null);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        BlobCodec.writeManifest(shas, lengths, manifest);
+    }
+
+    /** Adds CHUNKS to this store, compressed at LEVEL, hashing them and
+     *  writing the new ones on POOL, if it is not null.  Returns their
+     *  SHA1s. */
+    private List<ObjectId> addChunks(List<byte[]> chunks, int level,
+                                     ForkJoinPool pool) {
+        ObjectId[] shas = new ObjectId[chunks.size()];
+        inParallel(pool, chunks.size(),
+                   i -> shas[i] = ObjectId.hash(chunks.get(i)));
+        LinkedHashMap<ObjectId, byte[]> fresh =
+            new LinkedHashMap<ObjectId, byte[]>();
+        for (int i = 0; i < shas.length; i += 1) {
+            if (!contains(shas[i])) {
+                fresh.putIfAbsent(shas[i], chunks.get(i));
+            }
+        }
+        List<ObjectId> names = new ArrayList<ObjectId>(fresh.keySet());
+        inParallel(pool, names.size(), i -> {
+            ObjectId sha = names.get(i);
+            File tmp = new File(_loose, sha + ".chunk");
+            BlobCodec.encode(fresh.get(sha), tmp, level);
+            moveIn(sha, tmp);
+        });
+        return List.of(shas);
+    }
+
+    /** Runs TASK on each of 0 .. N-1 on POOL, or right away if N is at
+     *  most 1 or POOL is null, returning when all are done. */
+    static void inParallel(ForkJoinPool pool, int n, IntConsumer task) {
+        if (n <= 1 || pool == null) {
+            for (int i = 0; i < n; i += 1) {
+                task.accept(i);
+            }
+            return;
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        for (int i = 0; i < n; i += 1) {
+            int k = i;
+            tasks.add(pool.submit(() -> task.accept(k)));
+        }
+        for (ForkJoinTask<?> t : tasks) {
+            t.join();
+        }
+    }
+
+    /** Returns true iff some pack holds the blob named SHA. */
+    private boolean isPacked(ObjectId sha) {
+        for (PackFile pack : packs()) {
+            if (pack.find(sha) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the first bytes of the blob named SHA as it is stored,
+     *  enough to hold the header of a delta, preferring a loose copy
+     *  to a packed one, as repack does. */
+    private byte[] storedHeader(ObjectId sha) throws IOException {
+        File loose = new File(_loose, sha.toString());
+        try (InputStream in = loose.isFile() ? new FileInputStream(loose)
+                                             : openStored(sha)) {
+            return in.readNBytes(BlobCodec.DELTA_HEADER);
+        }
+    }
+
+    /** Returns the size of the blob named SHA as it is stored. */
+    private long storedLength(ObjectId sha) {
+        for (PackFile pack : packs()) {
+            int k = pack.find(sha);
+            if (k >= 0) {
+                return pack.length(k);
+            }
+        }
+        return new File(_loose, sha.toString()).length();
+    }
+
+    /** Returns the contents of FILE mapped into memory. */
+    private static ByteBuffer map(File file) throws IOException {
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            if (in.size() > Integer.MAX_VALUE) {
+                throw new IOException("too large to map: " + file);
+            }
+            return in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        }
+    }
+
+    /** Makes the working file FILE hold the contents of the blob named
+     *  SHA, replacing any file already there rather than writing
+     *  through it, since it may be a link to a blob, and making any
+     *  missing directories above it.  Encoded blobs are always decoded
+     *  through a buffer. */
+    void checkout(ObjectId sha, File file) {
+        Path path = file.toPath();
+        try {
+            Files.deleteIfExists(path);
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            if (_mode == Mode.COPY) {
+                Utils.writeContents(file, open(sha));
+                return;
+            }
+            for (PackFile pack : packs()) {
+                int k = pack.find(sha);
+                if (k >= 0 && isRaw(pack.open(k))) {
+                    try (FileChannel out = FileChannel.open(path, NEW)) {
+                        pack.transferTo(k, out);
+                    }
+                    return;
+                } else if (k >= 0) {
+                    Utils.writeContents(file, open(sha));
+                    return;
+                }
+            }
+            File loose = new File(_loose, sha.toString());
+            if (!loose.isFile()) {
+                throw new IllegalArgumentException("no blob " + sha);
+            }
+            if (!BlobCodec.isRaw(BlobCodec.header(loose))) {
+                Utils.writeContents(file, open(sha));
+                return;
+            }
+            if (_mode == Mode.HARDLINK && link(loose, path)) {
+                return;
+            }
+            try (FileChannel in = FileChannel.open(loose.toPath());
+                 FileChannel out = FileChannel.open(path, NEW)) {
+                Utils.transfer(in, 0, in.size(), out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns true iff the stored blob read from IN, which is
+     *  closed, has no header. */
+    private static boolean isRaw(InputStream in) throws IOException {
+        try (InputStream stored = in) {
+            return BlobCodec.isRaw(stored.readNBytes(BlobCodec.HEADER));
+        }
+    }
+
+    /** Makes PATH a hard link to the loose blob BLOB, first making BLOB
+     *  read-only.  Returns false if the file system cannot. */
+    private static boolean link(File blob, Path path) {
+        try {
+            blob.setReadOnly();
+            Files.createLink(path, blob.toPath());
+            return true;
+        } catch (IOException | UnsupportedOperationException excp) {
+            return false;
+        }
+    }
+
+    /** Moves every blob of this store into a single new pack,
+     *  removing the loose blobs and old packs it replaces. Returns
+     *  the number of blobs packed. */
+    int repack() throws IOException {
+        TreeMap<ObjectId, PackFile> sources =
+            new TreeMap<ObjectId, PackFile>();
+        for (PackFile pack : packs()) {
+            for (int k = 0; k < pack.size(); k += 1) {
+                sources.put(pack.sha(k), pack);
+            }
+        }
+        List<ObjectId> loose = new ArrayList<ObjectId>();
+        for (String name : Utils.plainFilenamesIn(_loose)) {
+            if (ObjectId.isId(name)) {
+                loose.add(ObjectId.fromHex(name));
+                sources.put(loose.get(loose.size() - 1), null);
+            }
+        }
+        if (sources.isEmpty()
+            || (loose.isEmpty() && packs().size() == 1)) {
+            return sources.size();
+        }
+        _packDir.mkdirs();
+        List<ObjectId> shas = new ArrayList<ObjectId>(sources.keySet());
+        String name = "pack-" + ObjectId.hash(shas.toArray());
+        File pack = new File(_packDir, name + ".pack");
+        File idx = new File(_packDir, name + ".idx");
+        PackFile.write(pack, idx, shas, sha -> {
+            PackFile from = sources.get(sha);
+            if (from == null) {
+                return new FileInputStream(new File(_loose, sha.toString()));
+            }
+            return from.open(from.find(sha));
+        });
+        for (PackFile old : packs()) {
+            old.close();
+            if (!old.packFile().equals(pack)) {
+                old.idxFile().delete();
+                old.packFile().delete();
+            }
+        }
+        for (ObjectId sha : loose) {
+            new File(_loose, sha.toString()).delete();
+        }
+        _packs = null;
+        return shas.size();
+    }
+
+    /** Smallest file stored as a manifest of chunks, when chunking is
+     *  on. */
+    static final int MIN_CHUNKED = 1 << 20;
+    /** Number of chunks read before they are hashed and written. */
+    private static final int BATCH = 64;
+    /** Fewest stored bytes of a blob worth storing as a delta. */
+    static final int MIN_DELTA = 1024;
+    /** Number of resolved blobs kept. */
+    private static final int RESOLVED = 8;
+    /** Size of a record of the file of heights: a SHA1 and a height. */
+    private static final int HEIGHT_RECORD = ObjectId.LENGTH + 4;
+
+    /** Options creating a new working file for writing. */
+    private static final Set<StandardOpenOption> NEW =
+        EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+    /** Returns the packs of this store, opening them on first use. */
+    private List<PackFile> packs() {
+        if (_packs == null) {
+            _packs = new ArrayList<PackFile>();
+            List<String> names = Utils.plainFilenamesIn(_packDir);
+            if (names != null) {
+                for (String name : names) {
+                    if (!name.endsWith(".idx")) {
+                        continue;
+                    }
+                    String base = name.substring(0, name.length() - 4);
+                    try {
+                        _packs.add(new PackFile(
+                            new File(_packDir, base + ".pack"),
+                            new File(_packDir, name)));
+                    } catch (IOException excp) {
+                        throw new IllegalArgumentException(
+                            excp.getMessage());
+                    }
+                }
+            }
+        }
+        return _packs;
+    }
+
+    /** Directory of loose blobs. */
+    private final File _loose;
+    /** Directory of packs. */
+    private final File _packDir;
+    /** File of the heights of the bases of deltas. */
+    private final File _heightsFile;
+    /** The heights of the bases of deltas, or null until needed. */
+    private HashMap<ObjectId, Integer> _heights;
+    /** The open packs, or null if they have not been opened yet. */
+    private List<PackFile> _packs;
+    /** How blobs are written into the working directory. */
+    private final Mode _mode;
+    /** The most recently resolved blobs, least recent first. */
+    private final LinkedHashMap<ObjectId, ByteBuffer> _resolved =
+        new LinkedHashMap<ObjectId, ByteBuffer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<ObjectId, ByteBuffer> eldest) {
+                return size() > RESOLVED;
+            }
+        };
+}
@@ -0,0 +1,102 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/** Cuts a stream into content-defined chunks, as FastCDC does.  A gear
+ *  hash, which depends only on the last 64 bytes read, is rolled over
+ *  the stream, and a chunk ends where enough of its high bits are
+ *  zero.  Since cut points depend only on nearby contents, an edit
+ *  moves the cut points around it and no others, so the chunks of two
+ *  versions of a file are mostly the same.  Chunks are between MIN and
+ *  MAX bytes long; a stricter mask below AVG bytes and a looser one
+ *  above it keep their sizes close to AVG.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class Chunker {
+    /** Shortest chunk, except at the end of the stream. */
+    static final int MIN = 16 << 10;
+    /** Usual length of a chunk. */
+    static final int AVG = 64 << 10;
+    /** Longest chunk. */
+    static final int MAX = 256 << 10;
+    /** Mask of the hash bits that must be zero to cut before AVG. */
+    private static final long MASK_SHORT = -1L << (64 - 18);
+    /** Mask of the hash bits that must be zero to cut after AVG. */
+    private static final long MASK_LONG = -1L << (64 - 14);
+    /** Random value of each byte, always the same so that the same
+     *  contents are always cut in the same places. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x676561724cL);
+        for (int i = 0; i < GEAR.length; i += 1) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /** A chunker of the contents of IN. */
+    Chunker(InputStream in) {
+        _in = in;
+    }
+
+    /** Returns the next chunk, or null at the end of the stream. */
+    byte[] next() throws IOException {
+        if (_end - _pos < MAX && !_eof) {
+            System.arraycopy(_buffer, _pos, _buffer, 0, _end - _pos);
+            _end -= _pos;
+            _pos = 0;
+            while (_end < _buffer.length && !_eof) {
+                int n = _in.read(_buffer, _end, _buffer.length - _end);
+                if (n < 0) {
+                    _eof = true;
+                } else {
+                    _end += n;
+                }
+            }
+        }
+        if (_pos == _end) {
+            return null;
+        }
+        int length = cut(_buffer, _pos, _end - _pos);
+        byte[] result = Arrays.copyOfRange(_buffer, _pos, _pos + length);
+        _pos += length;
+        return result;
+    }
+
+    /** Returns the length of the chunk starting at B[OFF], where N
+     *  bytes are available. */
+    static int cut(byte[] b, int off, int n) {
+        if (n <= MIN) {
+            return n;
+        }
+        int limit = Math.min(n, MAX), normal = Math.min(limit, AVG);
+        long h = 0;
+        int i = MIN;
+        for (; i < normal; i += 1) {
+            h = (h << 1) + GEAR[b[off + i] & 0xff];
+            if ((h & MASK_SHORT) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < limit; i += 1) {
+            h = (h << 1) + GEAR[b[off + i] & 0xff];
+            if ((h & MASK_LONG) == 0) {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+
+    /** The stream being cut. */
+    private final InputStream _in;
+    /** Bytes read and not yet returned are _buffer[_pos .. _end-1]. */
+    private final byte[] _buffer = new byte[2 * MAX];
+    /** Start of the next chunk in _buffer. */
+    private int _pos;
+    /** End of the bytes read into _buffer. */
+    private int _end;
+    /** True iff the stream has been read to its end. */
+    private boolean _eof;
+}
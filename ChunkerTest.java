@@ -0,0 +1,89 @@
+package gitlet;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import ucb.junit.textui;
+
+public class ChunkerTest {
+
+    /** Returns the SHA1s of the chunks of CONTENTS, checking their
+     *  sizes. */
+    private static Set<ObjectId> chunks(byte[] contents) throws IOException {
+        Set<ObjectId> result = new HashSet<ObjectId>();
+        Chunker chunker = new Chunker(new ByteArrayInputStream(contents));
+        int total = 0;
+        for (byte[] c = chunker.next(); c != null; c = chunker.next()) {
+            assertTrue(c.length <= Chunker.MAX);
+            total += c.length;
+            assertTrue(c.length >= Chunker.MIN || total == contents.length);
+            result.add(ObjectId.hash(c));
+        }
+        assertEquals(contents.length, total);
+        return result;
+    }
+
+    @Test
+    public void editsMoveOnlyNearbyCuts() throws IOException {
+        byte[] contents = new byte[4 << 20];
+        new Random(17).nextBytes(contents);
+        byte[] shifted = new byte[contents.length + 1];
+        System.arraycopy(contents, 0, shifted, 1, contents.length);
+        Set<ObjectId> before = chunks(contents), after = chunks(shifted);
+        assertTrue(before.size() > 16 && before.size() < 256);
+        Set<ObjectId> shared = new HashSet<ObjectId>(after);
+        shared.retainAll(before);
+        assertTrue(shared.size() >= before.size() - 2);
+        assertTrue(chunks(new byte[0]).isEmpty());
+        assertEquals(1, chunks(new byte[10]).size());
+    }
+
+    @Test
+    public void storesSharedChunksOnce() throws IOException {
+        File dir = Files.createTempDirectory("store").toFile();
+        File loose = new File(dir, BlobStore.LOOSE_DIR);
+        loose.mkdir();
+        BlobStore store = new BlobStore(dir);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        byte[] contents = new byte[3 << 20];
+        new Random(18).nextBytes(contents);
+        File work = new File(dir, "work");
+        File manifest = new File(dir, "manifest");
+        ObjectId previous = null;
+        for (int version = 0; version < 2; version += 1) {
+            contents[contents.length / 2] += 1;
+            Utils.writeContents(work, contents);
+            ObjectId sha = ObjectId.hash(work);
+            int before = loose.list().length;
+            store.writeChunked(work, manifest, 1, pool);
+            store.moveIn(sha, manifest);
+            int added = loose.list().length - before;
+            assertTrue(version == 0 ? added > 16 : added <= 3);
+            assertArrayEquals(contents, store.open(sha).readAllBytes());
+            assertTrue(previous == null
+                       || !store.deltify(sha, previous, 1, false));
+            previous = sha;
+            File out = new File(dir, "out");
+            store.checkout(sha, out);
+            assertArrayEquals(contents, Utils.readContents(out));
+        }
+        store.repack();
+        assertArrayEquals(contents, store.open(previous).readAllBytes());
+        pool.shutdown();
+    }
+
+    public static void main(String[] args) {
+        System.exit(textui.runClasses(ChunkerTest.class));
+    }
+
+}
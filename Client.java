@@ -0,0 +1,66 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/** A thin client of the Gitlet daemon: runs a command on the daemon
+ *  of the repository in the current directory and prints what it
+ *  printed, or runs the command itself, as Main does, if no daemon is
+ *  running.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+public class Client {
+    /** Runs the command ARGS, as java gitlet.Main ARGS would, exiting
+     *  with its status. */
+    public static void main(String... args) throws IOException {
+        SocketChannel channel =
+            connect(Paths.get(".gitlet", Daemon.SOCKET));
+        if (channel == null) {
+            Main.main(args);
+            return;
+        }
+        int status;
+        try (SocketChannel daemon = channel) {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(daemon)));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(daemon)));
+            for (PrintStream printed : new PrintStream[] {
+                    System.out, System.err }) {
+                printed.write(in.readNBytes(in.readInt()));
+                printed.flush();
+            }
+            status = in.readInt();
+        }
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /** Returns a connection to the daemon listening on SOCKET, or null
+     *  if there is none. */
+    static SocketChannel connect(Path socket) {
+        if (!Files.exists(socket)) {
+            return null;
+        }
+        try {
+            return SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+}
@@ -1,57 +1,174 @@
 package gitlet;
-import java.io.Serializable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.TreeMap;
 /** A commit class that represents a
- * commit node.
+ * commit node. Commits are stored in a compact binary form, so that
+ * reading one takes little more than reading its file.
  * @author Ruihan Zhao and Emily Pedersen. */
-public class Commit implements Serializable {
+public class Commit {
+    /** First four bytes of a stored commit. */
+    private static final int MAGIC = 0x47434d31;
     /** A commit's message. */
     private String _message;
-    /** A commit's parentHash. */
-    private String _parentHash;
-    /** Map associating file name to its corresponding SHA1. */
-    private TreeMap<String, String> _tracking = new TreeMap<String, String>();
+    /** A commit's parentHash, or null for the initial commit. */
+    private ObjectId _parentHash;
+    /** The SHA1 of the branch merged in by this commit, or null if it
+     * is not a merge. */
+    private ObjectId _secondParent;
+    /** The SHA1 of the tree of the files this commit tracks. */
+    private ObjectId _tree;
     /** A string representation of a Commit's date. */
     private String _date;
-    /** The date format. */
-    private DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
     /** The date of a commit. */
     private Date _dateObj;
+    /** This commit's SHA1, computed once when it is made. */
+    private ObjectId _id;
     /** The commit node that takes in a MESSAGE,
-     * PARENTHASH, treemap of TRACKING files,
+     * PARENTHASH, the SHA1 of the TREE of tracked files,
      * the DATE, and DATEOBJ. */
-    public Commit(String message, String parentHash, TreeMap<String,
-              String> tracking, String date, Date dateObj) {
+    public Commit(String message, ObjectId parentHash, ObjectId tree,
+              String date, Date dateObj) {
         _message = message;
         _parentHash = parentHash;
-        _tracking = tracking;
+        _tree = tree;
         _date = date;
         _dateObj = dateObj;
+        _id = computeId();
     }
 
-    /** Returns hashCode of this commit Node. */
-    String hashName() {
-        String result = "";
-        for (String key : _tracking.keySet()) {
-            result += key;
+    /** A merge commit that takes in a MESSAGE, PARENTHASH, the
+     * SECONDPARENT merged in, the SHA1 of the TREE of tracked files, the
+     * DATE, and DATEOBJ. */
+    public Commit(String message, ObjectId parentHash,
+              ObjectId secondParent, ObjectId tree,
+              String date, Date dateObj) {
+        _message = message;
+        _parentHash = parentHash;
+        _secondParent = secondParent;
+        _tree = tree;
+        _date = date;
+        _dateObj = dateObj;
+        _id = computeId();
+    }
+
+    /** Returns the SHA1 of this commit's message, parents, date and
+     * tree, which stands for every file it tracks. Each string fed to
+     * the digest is followed by a NUL, and each SHA1 is fed as its 20
+     * bytes, so that no two different commits hash the same text. */
+    private ObjectId computeId() {
+        int extra = _secondParent == null ? 0 : 2;
+        Object[] vals = new Object[7 + extra];
+        int k = 0;
+        vals[k++] = _message;
+        vals[k++] = "\0";
+        vals[k++] = _parentHash == null ? "" : _parentHash;
+        vals[k++] = "\0";
+        if (_secondParent != null) {
+            vals[k++] = _secondParent;
+            vals[k++] = "\0";
+        }
+        vals[k++] = _date;
+        vals[k++] = "\0";
+        vals[k++] = _tree;
+        return ObjectId.hash(vals);
+    }
+
+    /** Returns this commit as stored: its tree, a byte saying which
+     * parents it has, those parents, its date in milliseconds, and its
+     * date and message as UTF-8 strings preceded by their lengths. */
+    byte[] serialize() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.write(_tree.toBytes());
+            out.writeByte((_parentHash == null ? 0 : 1)
+                          | (_secondParent == null ? 0 : 2));
+            if (_parentHash != null) {
+                out.write(_parentHash.toBytes());
+            }
+            if (_secondParent != null) {
+                out.write(_secondParent.toBytes());
+            }
+            out.writeLong(_dateObj.getTime());
+            writeString(out, _date);
+            writeString(out, _message);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
         }
-        String hash = _message + _parentHash + _date + result;
-        return Utils.sha1(hash);
+    }
+
+    /** Returns the commit stored as CONTENTS. */
+    static Commit parse(byte[] contents) {
+        Trace.count(Trace.Counter.OBJECTS_PARSED, 1);
+        try {
+            DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(contents));
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("bad commit");
+            }
+            ObjectId tree = readId(in);
+            int parents = in.readByte();
+            ObjectId parent = (parents & 1) == 0 ? null : readId(in);
+            ObjectId second = (parents & 2) == 0 ? null : readId(in);
+            Date dateObj = new Date(in.readLong());
+            String date = readString(in);
+            String message = readString(in);
+            return new Commit(message, parent, second, tree, date, dateObj);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException("bad commit");
+        }
+    }
+
+    /** Writes S to OUT as its length and its UTF-8 bytes. */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Returns the string written by writeString read from IN. */
+    private static String readString(DataInputStream in)
+        throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the SHA1 read from IN. */
+    private static ObjectId readId(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[ObjectId.LENGTH];
+        in.readFully(bytes);
+        return ObjectId.fromBytes(bytes, 0);
+    }
+
+    /** Returns hashCode of this commit Node. */
+    ObjectId hashName() {
+        return _id;
     }
     /** Returns this commit's message. */
     String getMessage() {
         return _message;
     }
     /** Return this commit's parent hash. */
-    String getparentHash() {
+    ObjectId getparentHash() {
         return _parentHash;
     }
-    /**Returns this commit's hashmap of tracked files. */
-    TreeMap<String, String> getTracking() {
-        return _tracking;
+    /** Return the hash of the branch this commit merged in, or null. */
+    ObjectId getsecondParentHash() {
+        return _secondParent;
+    }
+    /** Returns the SHA1 of this commit's tree of tracked files. */
+    ObjectId getTree() {
+        return _tree;
     }
     /** Return this commit's date. */
     String getDate() {
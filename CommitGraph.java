@@ -0,0 +1,248 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/** A persistent commit graph, holding for each commit its SHA1, the
+ *  positions of its parents, its generation number and its date, so
+ *  that ancestry questions are answered without reading commits.
+ *  Commits are appended as they are made, always after their parents,
+ *  in fixed-size records.  The generation number of the initial
+ *  commit is 1, and that of any other commit is one more than the
+ *  largest of its parents', so a commit's ancestors all have smaller
+ *  generation numbers than it does, whatever their dates.  Commits are
+ *  found by SHA1 through a map from each to its position, built from
+ *  the records when first needed.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class CommitGraph {
+    /** First four bytes of a graph file. */
+    private static final int MAGIC = 0x47434731;
+    /** Size of a record: SHA1, two parent positions, generation number
+     *  and date in milliseconds. */
+    static final int RECORD = ObjectId.LENGTH + 4 + 4 + 4 + 8;
+    /** Position standing for no commit. */
+    static final int NONE = -1;
+    /** Marks of the merge-base walk: reached from the first commit,
+     *  reached from the second, reached from a merge base, and in the
+     *  queue. */
+    private static final byte ONE = 1, TWO = 2, STALE = 4, QUEUED = 8;
+
+    /** A graph kept in FILE, reading its records if FILE exists. */
+    CommitGraph(File file) {
+        _file = file;
+        if (file.isFile()) {
+            byte[] contents = Utils.readContents(file);
+            _data = ByteBuffer.wrap(contents);
+            if (contents.length < 4 || _data.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("bad commit graph");
+            }
+            _size = (contents.length - 4) / RECORD;
+        } else {
+            _data = ByteBuffer.allocate(4 + 64 * RECORD);
+            _data.putInt(0, MAGIC);
+        }
+    }
+
+    /** Returns true iff this graph has been written. */
+    boolean exists() {
+        return _file.isFile();
+    }
+
+    /** Returns the number of commits in this graph. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the position of the commit named ID, or NONE if it is
+     *  not in this graph. */
+    int position(ObjectId id) {
+        Integer result = positions().get(id);
+        return result == null ? NONE : result;
+    }
+
+    /** Returns the position of each commit by its SHA1, building the
+     *  map from the records on first use. */
+    private HashMap<ObjectId, Integer> positions() {
+        if (_positions == null) {
+            _positions = new HashMap<ObjectId, Integer>(2 * _size + 16);
+            for (int k = 0; k < _size; k += 1) {
+                _positions.put(id(k), k);
+            }
+        }
+        return _positions;
+    }
+
+    /** Returns the SHA1 of the commit at position K. */
+    ObjectId id(int k) {
+        return ObjectId.fromBuffer(_data, offset(k));
+    }
+
+    /** Returns the position of the first parent of the commit at
+     *  position K, or NONE. */
+    int parent(int k) {
+        return _data.getInt(offset(k) + ObjectId.LENGTH);
+    }
+
+    /** Returns the position of the second parent of the commit at
+     *  position K, or NONE. */
+    int secondParent(int k) {
+        return _data.getInt(offset(k) + ObjectId.LENGTH + 4);
+    }
+
+    /** Returns the generation number of the commit at position K. */
+    int generation(int k) {
+        return _data.getInt(offset(k) + ObjectId.LENGTH + 8);
+    }
+
+    /** Returns the date of the commit at position K in milliseconds. */
+    long date(int k) {
+        return _data.getLong(offset(k) + ObjectId.LENGTH + 12);
+    }
+
+    /** Appends COMMIT, whose parents must already be in this graph,
+     *  unless it is there already. */
+    void add(Commit commit) {
+        ObjectId id = commit.hashName();
+        if (position(id) != NONE) {
+            return;
+        }
+        int first = parentPosition(commit.getparentHash());
+        int second = parentPosition(commit.getsecondParentHash());
+        int generation = 1;
+        if (first != NONE) {
+            generation = Math.max(generation, generation(first) + 1);
+        }
+        if (second != NONE) {
+            generation = Math.max(generation, generation(second) + 1);
+        }
+        byte[] record = new byte[RECORD];
+        id.copyTo(record, 0);
+        ByteBuffer.wrap(record, ObjectId.LENGTH, RECORD - ObjectId.LENGTH)
+            .putInt(first).putInt(second).putInt(generation)
+            .putLong(commit.getDateobj().getTime());
+        boolean fresh = !_file.isFile();
+        try (FileOutputStream out = new FileOutputStream(_file, true)) {
+            if (fresh) {
+                out.write(_data.array(), 0, 4);
+            }
+            out.write(record);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (offset(_size + 1) > _data.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocate(2 * _data.capacity());
+            grown.put(_data.array(), 0, offset(_size));
+            _data = grown;
+        }
+        System.arraycopy(record, 0, _data.array(), offset(_size), RECORD);
+        positions().put(id, _size);
+        _size += 1;
+    }
+
+    /** Returns the SHA1 of the best common ancestor of the commits
+     *  named ONE and TWO, or null if they have none.
+     *
+     *  Both commits' ancestors are painted, newest generation first,
+     *  with the side they were reached from.  A commit reached from
+     *  both sides is a merge base, and its own ancestors are painted
+     *  stale.  Because no commit is visited before its descendants,
+     *  a commit is found to be a merge base only if no other merge
+     *  base descends from it, and the walk stops as soon as every
+     *  queued commit is stale rather than going on to the initial
+     *  commit.  Of several merge bases, as after criss-cross merges,
+     *  the newest is chosen. */
+    ObjectId mergeBase(ObjectId one, ObjectId two) {
+        int p1 = position(one), p2 = position(two);
+        if (p1 == NONE || p2 == NONE) {
+            throw new IllegalArgumentException("commit not in graph");
+        }
+        if (p1 == p2) {
+            return one;
+        }
+        byte[] marks = new byte[_size];
+        PriorityQueue<Integer> queue =
+            new PriorityQueue<Integer>((a, b) -> compareNewest(a, b));
+        marks[p1] = ONE | QUEUED;
+        marks[p2] = TWO | QUEUED;
+        queue.add(p1);
+        queue.add(p2);
+        int live = 2;
+        int best = NONE;
+        while (live > 0) {
+            int k = queue.poll();
+            marks[k] &= ~QUEUED;
+            if ((marks[k] & STALE) == 0) {
+                live -= 1;
+            }
+            int paint = marks[k] & (ONE | TWO | STALE);
+            if (paint == (ONE | TWO)) {
+                if (best == NONE || compareNewest(k, best) < 0) {
+                    best = k;
+                }
+                paint |= STALE;
+            }
+            for (int parent : new int[] { parent(k), secondParent(k) }) {
+                if (parent == NONE || (marks[parent] & paint) == paint) {
+                    continue;
+                }
+                boolean wasLive = (marks[parent] & STALE) == 0;
+                marks[parent] |= paint;
+                boolean isLive = (marks[parent] & STALE) == 0;
+                if ((marks[parent] & QUEUED) == 0) {
+                    marks[parent] |= QUEUED;
+                    queue.add(parent);
+                    live += isLive ? 1 : 0;
+                } else if (wasLive && !isLive) {
+                    live -= 1;
+                }
+            }
+        }
+        return best == NONE ? null : id(best);
+    }
+
+    /** Returns a negative number if the commit at position A should be
+     *  visited before the one at B: it has the larger generation
+     *  number, or else the later date, or else was added later. */
+    private int compareNewest(int a, int b) {
+        int cmp = Integer.compare(generation(b), generation(a));
+        if (cmp == 0) {
+            cmp = Long.compare(date(b), date(a));
+        }
+        if (cmp == 0) {
+            cmp = Integer.compare(b, a);
+        }
+        return cmp;
+    }
+
+    /** Returns the position of the parent named ID, which is NONE if
+     *  ID is null.  Throws IllegalArgumentException if the parent is
+     *  not in this graph. */
+    private int parentPosition(ObjectId id) {
+        if (id == null) {
+            return NONE;
+        }
+        int result = position(id);
+        if (result == NONE) {
+            throw new IllegalArgumentException("parent not in graph");
+        }
+        return result;
+    }
+
+    /** Returns the offset of the record at position K. */
+    private static int offset(int k) {
+        return 4 + k * RECORD;
+    }
+
+    /** The file this graph is kept in. */
+    private final File _file;
+    /** The magic number and records, followed by spare room. */
+    private ByteBuffer _data;
+    /** Number of records in _data. */
+    private int _size;
+    /** Position of each commit by its SHA1, or null until needed. */
+    private HashMap<ObjectId, Integer> _positions;
+}
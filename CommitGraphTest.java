@@ -0,0 +1,71 @@
+package gitlet;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+
+import org.junit.Test;
+
+import ucb.junit.textui;
+
+public class CommitGraphTest {
+
+    /** Returns a commit with MESSAGE, PARENT and SECOND made at TIME
+     *  milliseconds, added to GRAPH. */
+    private static Commit add(CommitGraph graph, String message,
+                              Commit parent, Commit second, long time) {
+        Commit result =
+            new Commit(message, parent == null ? null : parent.hashName(),
+                       second == null ? null : second.hashName(),
+                       Tree.EMPTY.id(), message,
+                       new Date(time));
+        graph.add(result);
+        return result;
+    }
+
+    @Test
+    public void findsSplitDespiteSkewedClocks() throws IOException {
+        File dir = Files.createTempDirectory("graph").toFile();
+        CommitGraph graph = new CommitGraph(new File(dir, "graph"));
+        Commit root = add(graph, "root", null, null, 1000);
+        Commit split = add(graph, "split", root, null, 2000);
+        Commit ours = split;
+        for (int i = 0; i < 50; i += 1) {
+            ours = add(graph, "ours " + i, ours, null, 500);
+        }
+        Commit theirs = add(graph, "theirs", split, null, 9000);
+        assertEquals(split.hashName(),
+                     graph.mergeBase(ours.hashName(), theirs.hashName()));
+        assertEquals(split.hashName(),
+                     graph.mergeBase(split.hashName(), ours.hashName()));
+        graph = new CommitGraph(new File(dir, "graph"));
+        assertEquals(53, graph.size());
+        assertEquals(52, graph.generation(graph.position(ours.hashName())));
+        assertEquals(split.hashName(),
+                     graph.mergeBase(theirs.hashName(), ours.hashName()));
+    }
+
+    @Test
+    public void mergesMoveTheSplit() throws IOException {
+        File dir = Files.createTempDirectory("graph").toFile();
+        CommitGraph graph = new CommitGraph(new File(dir, "graph"));
+        Commit root = add(graph, "root", null, null, 1000);
+        Commit a1 = add(graph, "a1", root, null, 2000);
+        Commit b1 = add(graph, "b1", root, null, 3000);
+        Commit merged = add(graph, "merge b1", a1, b1, 4000);
+        Commit a2 = add(graph, "a2", merged, null, 5000);
+        Commit b2 = add(graph, "b2", b1, null, 6000);
+        assertEquals(b1.hashName(),
+                     graph.mergeBase(a2.hashName(), b2.hashName()));
+        assertEquals(b1.hashName(),
+                     graph.mergeBase(b1.hashName(), a2.hashName()));
+    }
+
+    public static void main(String[] args) {
+        System.exit(textui.runClasses(CommitGraphTest.class));
+    }
+
+}
@@ -0,0 +1,77 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/** Settings of a repository, read from the properties file
+ *  .gitlet/config, which gitlet itself never writes.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class Config {
+    /** Number of threads used to scan and hash the working directory. */
+    static final String THREADS = "core.threads";
+    /** How blobs are written into the working directory: copy, channel
+     *  or hardlink. */
+    static final String CHECKOUT_MODE = "checkout.mode";
+    /** Deflater level at which blobs are compressed, from 0, storing
+     *  every blob as it is, to 9. */
+    static final String COMPRESSION = "core.compression";
+    /** Whether old versions of files are stored as deltas against
+     *  the versions that replace them. */
+    static final String DELTAS = "core.deltas";
+    /** Whether large files are stored as manifests of content-defined
+     *  chunks. */
+    static final String CHUNKING = "core.chunking";
+    /** Seconds a daemon waits for a command before it stops. */
+    static final String DAEMON_IDLE = "daemon.idleTimeout";
+    /** Whether a daemon watches the working directory for changes
+     *  rather than scanning it for each command. */
+    static final String DAEMON_WATCH = "daemon.watch";
+
+    /** The settings in FILE, which need not exist. */
+    Config(File file) {
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                _props.load(in);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Returns the setting KEY, or DEFLT if it is not set. */
+    String get(String key, String deflt) {
+        return _props.getProperty(key, deflt).trim();
+    }
+
+    /** Returns the integer setting KEY, or DEFLT if it is not set. */
+    int getInt(String key, int deflt) {
+        String value = _props.getProperty(key);
+        if (value == null) {
+            return deflt;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException excp) {
+            throw new IllegalArgumentException("bad value for " + key);
+        }
+    }
+
+    /** Returns the boolean setting KEY, or DEFLT if it is not set. */
+    boolean getBoolean(String key, boolean deflt) {
+        String value = _props.getProperty(key);
+        if (value == null) {
+            return deflt;
+        }
+        value = value.trim();
+        if (!value.equals("true") && !value.equals("false")) {
+            throw new IllegalArgumentException("bad value for " + key);
+        }
+        return value.equals("true");
+    }
+
+    /** The settings. */
+    private final Properties _props = new Properties();
+}
@@ -0,0 +1,261 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** A resident server of the commands of one repository, listening on
+ *  the Unix domain socket SOCKET in its gitlet directory, so that a
+ *  command pays neither for starting a JVM nor for loading the
+ *  repository.  The gitlet of the last command is kept, with its caches
+ *  of commits, trees, blobs and working files, and runs the next one,
+ *  unless something else has changed the gitlet directory since, when
+ *  the state is read afresh.  A command that ends early or fails is
+ *  not stored, so its gitlet is dropped.
+ *
+ *  Each connection carries one command: a count of arguments and each
+ *  argument, written as by DataOutputStream; it is answered with what
+ *  the command printed to System.out, then to System.err, each as a
+ *  length and bytes, and then its exit status.  Connections are served
+ *  on threads of their own, but commands run one at a time, holding
+ *  System.out and System.err for themselves.  The command daemon stop
+ *  stops the daemon, as does going IDLE seconds, or as many as the
+ *  setting daemon.idleTimeout gives, without a command.
+ *
+ *  Unless the setting daemon.watch is false, or the platform cannot
+ *  order its file events, the daemon also watches the working
+ *  directory through a Watcher, so that the commands it runs rehash
+ *  only the working files changed since the last, instead of listing
+ *  and checking every one.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class Daemon {
+    /** Name of the socket in the gitlet directory. */
+    static final String SOCKET = "daemon.sock";
+    /** Default seconds without a command before the daemon stops. */
+    static final int IDLE = 300;
+
+    /** A daemon of the repository whose gitlet directory is DIR, which
+     *  must be in the current directory, stopping after IDLEMILLIS
+     *  milliseconds without a command, and watching the working
+     *  directory iff WATCH. */
+    Daemon(File dir, long idleMillis, boolean watch) {
+        _dir = dir;
+        _idleMillis = idleMillis;
+        _watch = watch;
+    }
+
+    /** Serves commands until stopped or idle, unless another daemon is
+     *  serving this repository already. */
+    void serve() throws IOException {
+        Path socket = new File(_dir, SOCKET).toPath();
+        SocketChannel other = Client.connect(socket);
+        if (other != null) {
+            other.close();
+            System.out.println("A daemon is already running.");
+            return;
+        }
+        Files.deleteIfExists(socket);
+        if (_watch) {
+            try {
+                _watcher = new Watcher(new File("."));
+            } catch (IOException excp) {
+                _watcher = null;
+            }
+        }
+        ExecutorService handlers = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "gitlet-daemon");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+             Selector selector = Selector.open()) {
+            _selector = selector;
+            server.bind(UnixDomainSocketAddress.of(socket));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            _lastActive = System.currentTimeMillis();
+            while (!_stopping) {
+                if (_active.get() > 0) {
+                    selector.select();
+                } else {
+                    long idle = System.currentTimeMillis() - _lastActive;
+                    if (idle >= _idleMillis) {
+                        break;
+                    }
+                    selector.select(_idleMillis - idle);
+                }
+                selector.selectedKeys().clear();
+                for (SocketChannel client = server.accept(); client != null;
+                     client = server.accept()) {
+                    _active.incrementAndGet();
+                    SocketChannel connection = client;
+                    handlers.execute(() -> handle(connection));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(socket);
+            handlers.shutdown();
+            if (_watcher != null) {
+                _lock.lock();
+                try {
+                    _watcher.close();
+                } finally {
+                    _lock.unlock();
+                }
+            }
+        }
+    }
+
+    /** Runs the command read from CONNECTION and writes back its
+     *  output, closing CONNECTION. */
+    private void handle(SocketChannel connection) {
+        try (SocketChannel channel = connection) {
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel)));
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i += 1) {
+                args[i] = in.readUTF();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            int status = execute(args, out, err);
+            DataOutputStream reply = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+            for (ByteArrayOutputStream printed : Arrays.asList(out, err)) {
+                reply.writeInt(printed.size());
+                printed.writeTo(reply);
+            }
+            reply.writeInt(status);
+            reply.flush();
+        } catch (IOException excp) {
+            return;
+        } finally {
+            _lastActive = System.currentTimeMillis();
+            _active.decrementAndGet();
+            _selector.wakeup();
+        }
+    }
+
+    /** Runs the command ARGS, which may start with a --trace flag,
+     *  once no other command is running, with what it prints to
+     *  System.out going to OUT and to System.err going to ERR.  Returns
+     *  its exit status. */
+    private int execute(String[] args, ByteArrayOutputStream out,
+                        ByteArrayOutputStream err) {
+        PrintStream stdout = System.out, stderr = System.err;
+        _lock.lock();
+        try {
+            System.setOut(new PrintStream(out, true));
+            System.setErr(new PrintStream(err, true));
+            if (args.length > 0 && Trace.isFlag(args[0])) {
+                try {
+                    Trace.start(args[0]);
+                } catch (IllegalArgumentException excp) {
+                    System.out.println("Cannot write trace: "
+                                       + excp.getMessage());
+                    return 0;
+                }
+                args = Arrays.copyOfRange(args, 1, args.length);
+            }
+            if (args.length > 0 && args[0].equals("daemon")) {
+                if (args.length == 2 && args[1].equals("stop")) {
+                    _stopping = true;
+                    System.out.println("Daemon stopped.");
+                } else {
+                    System.out.println("A daemon is already running.");
+                }
+                return 0;
+            }
+            if (!fingerprint().equals(_fingerprint)) {
+                _gitlet = null;
+            }
+            _gitlet = Main.run(args, _gitlet, _watcher);
+            _fingerprint = fingerprint();
+            return 0;
+        } catch (GitletExit excp) {
+            _gitlet = null;
+            return 0;
+        } catch (IOException | RuntimeException excp) {
+            excp.printStackTrace();
+            _gitlet = null;
+            return 1;
+        } finally {
+            Trace.finish(args.length > 0 ? args[0] : null);
+            System.setOut(stdout);
+            System.setErr(stderr);
+            _lock.unlock();
+        }
+    }
+
+    /** Returns the name, modification time and size of every file in
+     *  the gitlet directory and its directory of branches, which change
+     *  whenever a command changes the repository. */
+    private String fingerprint() throws IOException {
+        StringBuilder result = new StringBuilder();
+        for (File dir : new File[] { _dir, new File(_dir, ".refs") }) {
+            String[] names = dir.list();
+            if (names == null) {
+                continue;
+            }
+            Arrays.sort(names);
+            for (String name : names) {
+                Path path = new File(dir, name).toPath();
+                if (name.equals(SOCKET) || !Files.exists(path)) {
+                    continue;
+                }
+                result.append(name).append(' ')
+                    .append(Files.getLastModifiedTime(path)
+                            .to(TimeUnit.NANOSECONDS))
+                    .append(' ').append(Files.size(path)).append('\n');
+            }
+        }
+        return result.toString();
+    }
+
+    /** The gitlet directory. */
+    private final File _dir;
+    /** Milliseconds without a command before stopping. */
+    private final long _idleMillis;
+    /** True iff the working directory is to be watched. */
+    private final boolean _watch;
+    /** The watcher of the working directory, or null if there is
+     *  none. */
+    private Watcher _watcher;
+    /** Held while a command runs. */
+    private final ReentrantLock _lock = new ReentrantLock();
+    /** Number of connections being served. */
+    private final AtomicInteger _active = new AtomicInteger();
+    /** Selector waiting for connections, woken as each is served. */
+    private volatile Selector _selector;
+    /** When the last connection was served, in milliseconds. */
+    private volatile long _lastActive;
+    /** True once the daemon has been told to stop. */
+    private volatile boolean _stopping;
+    /** The gitlet of the last command, or null if the next must read
+     *  its state. */
+    private Gitlet _gitlet;
+    /** The fingerprint of the gitlet directory after the last command,
+     *  or null if there was none. */
+    private String _fingerprint;
+}
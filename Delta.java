@@ -0,0 +1,257 @@
+package gitlet;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/** Deltas between blobs: instructions that build a target from a base
+ *  by copying ranges of the base and inserting new bytes.  A delta is
+ *  a sequence of instructions, each an op byte followed by unsigned
+ *  variable-length numbers: COPY, the offset and length of a range of
+ *  the base, or INSERT, a length and that many bytes.
+ *
+ *  Deltas are found as in the rsync and Git algorithms: the base is
+ *  indexed by a hash of each of its aligned blocks, and a rolling hash
+ *  of every block-sized window of the target is looked up there; each
+ *  match is checked and then extended in both directions.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class Delta {
+    /** Op of an instruction copying from the base. */
+    static final int COPY = 0;
+    /** Op of an instruction inserting new bytes. */
+    static final int INSERT = 1;
+    /** Longest chain of deltas allowed, counting from a blob stored
+     *  whole. */
+    static final int MAX_DEPTH = 10;
+    /** Smallest block indexed. */
+    private static final int MIN_BLOCK = 16;
+    /** Most blocks indexed; larger bases are indexed in larger blocks. */
+    private static final int MAX_BLOCKS = 1 << 22;
+    /** Most table slots probed for a block. */
+    private static final int PROBES = 8;
+    /** Multiplier of the rolling hash. */
+    private static final long PRIME = 0x100000001b3L;
+
+    /** Writes to OUT the instructions building TARGET from BASE. */
+    static void write(ByteBuffer base, ByteBuffer target, OutputStream out)
+        throws IOException {
+        int block = MIN_BLOCK;
+        while (base.limit() / block > MAX_BLOCKS) {
+            block *= 2;
+        }
+        Index index = new Index(base, block);
+        int n = target.limit();
+        long power = 1;
+        for (int i = 1; i < block; i += 1) {
+            power *= PRIME;
+        }
+        int pending = 0, p = 0;
+        long h = n >= block ? hash(target, 0, block) : 0;
+        while (p + block <= n) {
+            int match = index.find(h, target, p);
+            if (match < 0) {
+                if (p + block < n) {
+                    h = (h - (target.get(p) & 0xff) * power) * PRIME
+                        + (target.get(p + block) & 0xff);
+                }
+                p += 1;
+                continue;
+            }
+            int from = match, start = p;
+            while (start > pending && from > 0
+                   && base.get(from - 1) == target.get(start - 1)) {
+                from -= 1;
+                start -= 1;
+            }
+            int length = p - start + block;
+            while (start + length < n && from + length < base.limit()
+                   && base.get(from + length) == target.get(start + length)) {
+                length += 1;
+            }
+            insert(target, pending, start, out);
+            out.write(COPY);
+            writeNumber(from, out);
+            writeNumber(length, out);
+            p = start + length;
+            pending = p;
+            if (p + block <= n) {
+                h = hash(target, p, block);
+            }
+        }
+        insert(target, pending, n, out);
+    }
+
+    /** A stream of the target built by the instructions read from a
+     *  stream from the base. */
+    static class Reader extends InputStream {
+        /** A stream of the target built from BASE by the instructions
+         *  read from INSTRUCTIONS, which is closed with it. */
+        Reader(ByteBuffer base, InputStream instructions) {
+            _base = base;
+            _in = instructions;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (_remaining == 0) {
+                int op = _in.read();
+                if (op < 0) {
+                    return -1;
+                } else if (op == COPY) {
+                    _copyFrom = readNumber(_in);
+                    _copying = true;
+                } else if (op == INSERT) {
+                    _copying = false;
+                } else {
+                    throw new IOException("bad delta");
+                }
+                _remaining = readNumber(_in);
+            }
+            int n = (int) Math.min(len, _remaining);
+            if (_copying) {
+                _base.get((int) _copyFrom, b, off, n);
+                _copyFrom += n;
+            } else {
+                n = _in.read(b, off, n);
+                if (n < 0) {
+                    throw new EOFException("truncated delta");
+                }
+            }
+            _remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            _in.close();
+        }
+
+        /** The base. */
+        private final ByteBuffer _base;
+        /** The instructions. */
+        private final InputStream _in;
+        /** True iff the current instruction copies from the base. */
+        private boolean _copying;
+        /** Offset in the base of the next byte copied. */
+        private long _copyFrom;
+        /** Bytes left in the current instruction. */
+        private long _remaining;
+    }
+
+    /** Writes N as an unsigned variable-length number to OUT, seven
+     *  bits at a time, least significant first. */
+    static void writeNumber(long n, OutputStream out) throws IOException {
+        while ((n & ~0x7fL) != 0) {
+            out.write((int) (n & 0x7f) | 0x80);
+            n >>>= 7;
+        }
+        out.write((int) n);
+    }
+
+    /** Returns the unsigned variable-length number read from IN. */
+    static long readNumber(InputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("truncated delta");
+            }
+            result |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+    }
+
+    /** Writes an instruction inserting TARGET[FROM .. TO-1] to OUT,
+     *  unless that range is empty. */
+    private static void insert(ByteBuffer target, int from, int to,
+                               OutputStream out) throws IOException {
+        if (from == to) {
+            return;
+        }
+        out.write(INSERT);
+        writeNumber(to - from, out);
+        byte[] chunk = new byte[Math.min(to - from, Utils.BUFFER_SIZE)];
+        while (from < to) {
+            int n = Math.min(chunk.length, to - from);
+            target.get(from, chunk, 0, n);
+            out.write(chunk, 0, n);
+            from += n;
+        }
+    }
+
+    /** Returns the rolling hash of the LENGTH bytes of B at OFF. */
+    private static long hash(ByteBuffer b, int off, int length) {
+        long h = 0;
+        for (int i = 0; i < length; i += 1) {
+            h = h * PRIME + (b.get(off + i) & 0xff);
+        }
+        return h;
+    }
+
+    /** A table of the offsets of the aligned blocks of a base, by the
+     *  hash of their contents. */
+    private static class Index {
+        /** An index of the blocks of BLOCK bytes of BASE. */
+        Index(ByteBuffer base, int block) {
+            _base = base;
+            _block = block;
+            int blocks = base.limit() / block;
+            int size = Integer.highestOneBit(Math.max(blocks, 8)) * 4;
+            _slots = new int[size];
+            for (int k = 0; k < blocks; k += 1) {
+                int slot = slot(hash(base, k * block, block));
+                for (int i = 0; i < PROBES; i += 1) {
+                    int s = (slot + i) & (size - 1);
+                    if (_slots[s] == 0) {
+                        _slots[s] = k * block + 1;
+                        break;
+                    }
+                }
+            }
+        }
+
+        /** Returns the offset of a block of the base equal to the one
+         *  of TARGET at P, whose hash is H, or -1 if there is none. */
+        int find(long h, ByteBuffer target, int p) {
+            int slot = slot(h);
+            for (int i = 0; i < PROBES; i += 1) {
+                int off = _slots[(slot + i) & (_slots.length - 1)] - 1;
+                if (off < 0) {
+                    return -1;
+                }
+                if (_base.slice(off, _block)
+                    .equals(target.slice(p, _block))) {
+                    return off;
+                }
+            }
+            return -1;
+        }
+
+        /** Returns the first slot for hash H. */
+        private int slot(long h) {
+            h *= 0x9e3779b97f4a7c15L;
+            return (int) (h >>> 32) & (_slots.length - 1);
+        }
+
+        /** The base. */
+        private final ByteBuffer _base;
+        /** Size of a block. */
+        private final int _block;
+        /** One more than the offset of each block, or 0 in free
+         *  slots. */
+        private final int[] _slots;
+    }
+}
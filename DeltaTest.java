@@ -0,0 +1,169 @@
+package gitlet;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ucb.junit.textui;
+
+public class DeltaTest {
+
+    /** Returns TARGET rebuilt from BASE through a delta, checking that
+     *  the delta has at most MAXSIZE bytes. */
+    private static byte[] roundTrip(byte[] base, byte[] target,
+                                    int maxSize) throws IOException {
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        Delta.write(ByteBuffer.wrap(base), ByteBuffer.wrap(target), delta);
+        assertTrue(delta.size() <= maxSize);
+        return new Delta.Reader(ByteBuffer.wrap(base),
+                                new ByteArrayInputStream(delta.toByteArray()))
+            .readAllBytes();
+    }
+
+    /** Returns B with LENGTH bytes at OFF replaced by INSERTED. */
+    private static byte[] splice(byte[] b, int off, int length,
+                                 byte[] inserted) {
+        byte[] result = new byte[b.length - length + inserted.length];
+        System.arraycopy(b, 0, result, 0, off);
+        System.arraycopy(inserted, 0, result, off, inserted.length);
+        System.arraycopy(b, off + length, result, off + inserted.length,
+                         b.length - off - length);
+        return result;
+    }
+
+    @Test
+    public void rebuildsEditedBlobs() throws IOException {
+        Random random = new Random(16);
+        byte[] base = new byte[300000];
+        random.nextBytes(base);
+        byte[] edited = splice(base, 1000, 0, "inserted".getBytes());
+        edited = splice(edited, 150001, 3000, new byte[0]);
+        edited = splice(edited, 250000, 5, "changed".getBytes());
+        assertArrayEquals(edited, roundTrip(base, edited, 200));
+        byte[] other = new byte[5000];
+        random.nextBytes(other);
+        assertArrayEquals(other, roundTrip(base, other, 5100));
+        assertArrayEquals(new byte[0], roundTrip(base, new byte[0], 0));
+        assertArrayEquals(base, roundTrip(new byte[0], base, 300100));
+        byte[] small = Arrays.copyOf(base, 10);
+        assertArrayEquals(small, roundTrip(base, small, 20));
+    }
+
+    @Test
+    public void storesVersionsAsBoundedChains() throws IOException {
+        File dir = Files.createTempDirectory("store").toFile();
+        File loose = new File(dir, BlobStore.LOOSE_DIR);
+        loose.mkdir();
+        BlobStore store = new BlobStore(dir);
+        byte[][] versions = new byte[Delta.MAX_DEPTH + 3][];
+        ObjectId[] shas = new ObjectId[versions.length];
+        Random random = new Random(12);
+        versions[0] = new byte[100000];
+        random.nextBytes(versions[0]);
+        for (int v = 0; v < versions.length; v += 1) {
+            if (v > 0) {
+                versions[v] = splice(versions[v - 1], 500 * v, 10,
+                                     ("version " + v).getBytes());
+            }
+            shas[v] = ObjectId.hash(versions[v]);
+            File staged = new File(dir, "staged");
+            Utils.writeContents(staged, versions[v]);
+            store.moveIn(shas[v], staged);
+            boolean deltified = v > 0
+                && store.deltify(shas[v], shas[v - 1], 1, false);
+            assertEquals(v % (Delta.MAX_DEPTH + 1) != 0, deltified);
+        }
+        assertFalse(store.deltify(shas[0], shas[1], 1, false));
+        assertTrue(new File(loose, shas[1].toString()).length() < 1000);
+        for (int pass = 0; pass < 2; pass += 1) {
+            BlobStore fresh = new BlobStore(dir);
+            for (int v = versions.length - 1; v >= 0; v -= 1) {
+                assertArrayEquals(versions[v],
+                                  fresh.open(shas[v]).readAllBytes());
+            }
+            fresh.repack();
+        }
+    }
+
+    @Test
+    public void boundsChainsThroughDependents() throws IOException {
+        File dir = Files.createTempDirectory("store").toFile();
+        File loose = new File(dir, BlobStore.LOOSE_DIR);
+        loose.mkdir();
+        BlobStore store = new BlobStore(dir);
+        int n = 2 * Delta.MAX_DEPTH + 5;
+        ObjectId[] shas = new ObjectId[n];
+        byte[] version = new byte[100000];
+        new Random(13).nextBytes(version);
+        for (int v = 0; v < n; v += 1) {
+            version = splice(version, 500 * v, 10, ("v" + v).getBytes());
+            shas[v] = ObjectId.hash(version);
+            File staged = new File(dir, "staged");
+            Utils.writeContents(staged, version);
+            store.moveIn(shas[v], staged);
+            if (v > 0) {
+                store.deltify(shas[v - 1], shas[v], 1, false);
+            }
+        }
+        BlobStore fresh = new BlobStore(dir);
+        assertFalse(fresh.deltify(shas[Delta.MAX_DEPTH],
+                                  shas[Delta.MAX_DEPTH + 1], 1, false));
+        for (ObjectId sha : shas) {
+            int depth = 0;
+            for (byte[] head = BlobCodec.header(new File(loose, sha + ""));
+                 BlobCodec.isDelta(head);
+                 head = BlobCodec.header(new File(loose,
+                     BlobCodec.deltaBase(head) + ""))) {
+                depth += 1;
+            }
+            assertTrue(depth <= Delta.MAX_DEPTH);
+        }
+        assertEquals(Delta.MAX_DEPTH, fresh.height(shas[Delta.MAX_DEPTH]));
+    }
+
+    @Test
+    public void leavesPackedBlobsToRepack() throws IOException {
+        File dir = Files.createTempDirectory("store").toFile();
+        File loose = new File(dir, BlobStore.LOOSE_DIR);
+        loose.mkdir();
+        BlobStore store = new BlobStore(dir);
+        byte[] old = new byte[100000];
+        new Random(14).nextBytes(old);
+        byte[] edited = splice(old, 5000, 10, "edited".getBytes());
+        ObjectId[] shas = { ObjectId.hash(old), ObjectId.hash(edited) };
+        File staged = new File(dir, "staged");
+        Utils.writeContents(staged, old);
+        store.moveIn(shas[0], staged);
+        store.repack();
+        Utils.writeContents(staged, edited);
+        store.moveIn(shas[1], staged);
+        assertFalse(store.deltify(shas[0], shas[1], 1, false));
+        assertFalse(new File(loose, shas[0].toString()).exists());
+        assertEquals(0, store.height(shas[1]));
+        assertTrue(store.deltify(shas[0], shas[1], 1, true));
+        assertFalse(store.deltify(shas[0], shas[1], 1, true));
+        store.repack();
+        BlobStore fresh = new BlobStore(dir);
+        assertArrayEquals(old, fresh.open(shas[0]).readAllBytes());
+        assertArrayEquals(edited, fresh.open(shas[1]).readAllBytes());
+        long packed = 0;
+        for (File file : new File(dir, BlobStore.PACK_DIR).listFiles()) {
+            packed += file.length();
+        }
+        assertTrue(packed < 110000);
+    }
+
+    public static void main(String[] args) {
+        System.exit(textui.runClasses(DeltaTest.class));
+    }
+
+}
@@ -1,41 +1,108 @@
 package gitlet;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 import java.util.Date;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.regex.PatternSyntaxException;
 
 /** Our mini version control system.
 @author Ruihan Zhao and Emily Pedersen. */
-public class Gitlet implements Serializable {
+public class Gitlet {
     /** String representation of home directory. */
     private String homedir = ".gitlet";
     /** String representation of staging directory. */
     private String stagingdir = ".staging";
-    /** String representation of blob directory. */
-    private String blobdir = ".blobs";
-    /** HashMap mapping branch names to the
+    /** Cached SHA1s of working files, so unchanged files are not
+     * rehashed. */
+    private StatCache stats = new StatCache(new File(homedir, "index"));
+    /** Settings of this repository. */
+    private Config config = new Config(new File(homedir, "config"));
+    /** The blobs of this repository, loose or packed. */
+    private BlobStore blobs = new BlobStore(new File(homedir),
+        BlobStore.Mode.of(config.get(Config.CHECKOUT_MODE, "channel")));
+    /** The trees of this repository's commits. */
+    private TreeStore trees = new TreeStore(new File(homedir, ".trees"));
+    /** Deflater level at which added files are compressed. */
+    private int compression = config.getInt(Config.COMPRESSION,
+                                            Deflater.BEST_SPEED);
+    /** True iff old versions of files are stored as deltas against
+     * the versions that replace them. */
+    private boolean deltas = config.getBoolean(Config.DELTAS, true);
+    /** True iff large files are stored as manifests of chunks. */
+    private boolean chunking = config.getBoolean(Config.CHUNKING, false);
+    /** Scanner hashing the working directory in parallel, on at least
+     * one thread whatever the setting says. */
+    private WorkingTree workingTree = new WorkingTree(new File("."), stats,
+        Math.max(1, config.getInt(Config.THREADS,
+                                  Runtime.getRuntime().availableProcessors())));
+    /** String representation of commit directory. Each commit is
+     * stored once, in a file named by its SHA1. */
+    private String commitdir = ".commits";
+    /** String representation of branch directory. Each branch is
+     * a small file holding the SHA1 of its head commit. */
+    private String refdir = ".refs";
+    /** Name of the file holding the current branch. */
+    private String headfile = "HEAD";
+    /** Name of the file holding the staging area. */
+    private String stagefile = "stage";
+    /** Index of commit SHA1s for resolving abbreviated ids, or null
+     * if it has not been opened yet. */
+    private IdIndex ids;
+    /** Index of commit messages, or null if it has not been opened
+     * yet. */
+    private MessageIndex messages;
+    /** Graph of the parents of all commits, or null if it has not been
+     * opened yet. */
+    private CommitGraph graph;
+    /** HashMap mapping branch names to the SHA1 of the
      * corresponding head commit of that branch. */
-    private HashMap<String, Commit> branches = new HashMap<String, Commit>();
+    private HashMap<String, ObjectId> branches =
+        new HashMap<String, ObjectId>();
     /** HashMap mapping file name to its corresponding SHA1. */
-    private HashMap<String, String> stagedfiles = new HashMap<String, String>();
-    /** HashMap of SHA1s of commits to corresponding commit nodes. */
-    private HashMap<String, Commit> commits = new HashMap<String, Commit>();
+    private HashMap<String, ObjectId> stagedfiles =
+        new HashMap<String, ObjectId>();
+    /** Most commits kept in memory once read or made. */
+    private static final int CACHED_COMMITS = 256;
+    /** Map of SHA1s of the commits most recently read or created to
+     * the commits, least recently used first. */
+    private HashMap<ObjectId, Commit> commits =
+        new LinkedHashMap<ObjectId, Commit>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<ObjectId, Commit> eldest) {
+                return size() > CACHED_COMMITS;
+            }
+        };
     /** Treeset of names of removed files. */
     private TreeSet<String> removedFiles = new TreeSet<String>();
     /** Pointer to current commit. */
@@ -44,12 +111,19 @@ public class Gitlet implements Serializable {
     private String currBranch;
     /** HashSet of removed files that have not been committed. */
     private TreeSet<String> rmNotCommitted = new TreeSet<String>();
+    /** Branches as last read from or written to disk. */
+    private HashMap<String, ObjectId> savedBranches =
+        new HashMap<String, ObjectId>();
+    /** Current branch as last read from or written to disk. */
+    private String savedBranch;
+    /** Serialized staging area as last read from or written to disk. */
+    private byte[] savedStage = new byte[0];
     /** Return stagedFiles. */
-    HashMap<String, String> getStaged() {
+    HashMap<String, ObjectId> getStaged() {
         return stagedfiles;
     }
     /** Return commits. */
-    HashMap<String, Commit> getCommits() {
+    HashMap<ObjectId, Commit> getCommits() {
         return commits;
     }
     /** Return head. */
@@ -57,47 +131,228 @@ public class Gitlet implements Serializable {
         return head;
     }
     /** Returns a list of branches. */
-    HashMap<String, Commit> getBranches() {
+    HashMap<String, ObjectId> getBranches() {
         return branches;
     }
     /** A mini version control system! */
     public Gitlet() {
         DateFormat time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         Date date = new Date();
-        Commit initialCommit = new Commit("initial commit", "",
-            new TreeMap<String, String>(), time.format(date), date);
+        Commit initialCommit = new Commit("initial commit", null,
+            Tree.EMPTY.id(), time.format(date), date);
         head = initialCommit;
-        branches.put("master", head);
+        branches.put("master", head.hashName());
         commits.put(initialCommit.hashName(), initialCommit);
         currBranch = "master";
     }
-    /** Returns a deserialized gitlet object from FILE. */
-    Gitlet readPointer(File file) {
-        Gitlet temp;
-        try {
-            ObjectInputStream in =
-                new ObjectInputStream(new FileInputStream(file));
-            temp = (Gitlet) in.readObject();
-            in.close();
-        } catch (IOException excp) {
-            return null;
-        } catch (ClassNotFoundException e) {
-            return null;
+    /** A mini version control system whose branches and staging
+     * area are read from the gitlet directory DIR. Commits are
+     * read lazily, as they are needed. */
+    private Gitlet(File dir) {
+        currBranch = Utils.readContentsAsString(new File(dir, headfile));
+        File refs = new File(dir, refdir);
+        for (String name : Utils.plainFilenamesIn(refs)) {
+            branches.put(name, ObjectId.fromHex(
+                Utils.readContentsAsString(new File(refs, name))));
+        }
+        savedBranch = currBranch;
+        savedBranches.putAll(branches);
+        readStage(new File(dir, stagefile));
+        head = getCommit(branches.get(currBranch));
+    }
+    /** Returns a gitlet object whose state is read from DIR. */
+    static Gitlet readPointer(File dir) {
+        return new Gitlet(dir);
+    }
+    /** Has WATCHER keep track of the working files for this gitlet. */
+    void watch(Watcher watcher) {
+        workingTree.watch(watcher);
+    }
+    /** Writes the parts of this gitlet's state that changed since
+     * it was read. Commits are written once, when they are made. */
+    void writePointer() {
+        if (!currBranch.equals(savedBranch)) {
+            Utils.writeContents(new File(homedir, headfile), currBranch);
+            savedBranch = currBranch;
+        }
+        File refs = new File(homedir, refdir);
+        for (String name : branches.keySet()) {
+            ObjectId sha = branches.get(name);
+            if (!sha.equals(savedBranches.get(name))) {
+                Utils.writeContents(new File(refs, name), sha.toString());
+            }
+        }
+        for (String name : savedBranches.keySet()) {
+            if (!branches.containsKey(name)) {
+                new File(refs, name).delete();
+            }
+        }
+        savedBranches.clear();
+        savedBranches.putAll(branches);
+        stats.write();
+        byte[] stage = serializeStage();
+        if (!Arrays.equals(stage, savedStage)) {
+            Utils.writeContents(new File(homedir, stagefile), stage);
+            savedStage = stage;
         }
-        return temp;
     }
-    /** Serializes a gitlet OBJECT. */
-    void writePointer(Object object) {
-        File serFile = new File(".gitlet" + "/" + "serFile");
+    /** Returns the staged files, removed files and files removed
+     * but not committed, serialized in that order. */
+    private byte[] serializeStage() {
         try {
-            ObjectOutputStream out =
-                new ObjectOutputStream(new FileOutputStream(serFile));
-            out.writeObject(object);
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(stream);
+            out.writeObject(stagedfiles);
+            out.writeObject(removedFiles);
+            out.writeObject(rmNotCommitted);
             out.close();
+            return stream.toByteArray();
         } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+    /** Reads the staging area written by serializeStage from FILE. */
+    @SuppressWarnings("unchecked")
+    private void readStage(File file) {
+        if (!file.isFile()) {
             return;
         }
-
+        savedStage = Utils.readContents(file);
+        Trace.count(Trace.Counter.OBJECTS_PARSED, 1);
+        try {
+            ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(savedStage));
+            stagedfiles = (HashMap<String, ObjectId>) in.readObject();
+            removedFiles = (TreeSet<String>) in.readObject();
+            rmNotCommitted = (TreeSet<String>) in.readObject();
+            in.close();
+        } catch (IOException | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+    /** Returns the commit with this SHA, reading it from the
+     * commit directory unless it was used recently, or null
+     * if there is no such commit. */
+    Commit getCommit(ObjectId sha) {
+        if (sha == null) {
+            return null;
+        }
+        Commit commit = commits.get(sha);
+        if (commit == null) {
+            File file = new File(homedir + "/" + commitdir + "/" + sha);
+            if (!file.isFile()) {
+                return null;
+            }
+            commit = Commit.parse(Utils.readContents(file));
+            commits.put(sha, commit);
+        }
+        return commit;
+    }
+    /** Records COMMIT in the commit cache and writes it to the
+     * commit directory. */
+    void writeCommit(Commit commit) {
+        ObjectId sha = commit.hashName();
+        commits.put(sha, commit);
+        File file = new File(homedir + "/" + commitdir + "/" + sha);
+        if (!file.exists()) {
+            IdIndex idIndex = ids();
+            MessageIndex messageIndex = messages();
+            Utils.writeContents(file, commit.serialize());
+            idIndex.add(sha);
+            messageIndex.add(sha, commit.getMessage());
+            addToGraph(sha);
+        }
+    }
+    /** Returns the index of commit messages, opening it on first use
+     * and building it from every commit if it does not exist. */
+    private MessageIndex messages() {
+        if (messages == null) {
+            messages = new MessageIndex(new File(homedir, ".messages"));
+            if (!messages.exists()) {
+                for (ObjectId sha : allCommits()) {
+                    messages.add(sha, getCommit(sha).getMessage());
+                }
+            }
+        }
+        return messages;
+    }
+    /** Returns the commit graph, opening it on first use and building
+     * it from every commit if it does not exist. */
+    private CommitGraph graph() {
+        if (graph == null) {
+            graph = new CommitGraph(new File(homedir, "commit-graph"));
+            if (!graph.exists()) {
+                for (ObjectId sha : allCommits()) {
+                    addToGraph(sha);
+                }
+            }
+        }
+        return graph;
+    }
+    /** Adds the commit named SHA to the commit graph after any of its
+     * ancestors not yet there, without recursing. */
+    private void addToGraph(ObjectId sha) {
+        CommitGraph commitGraph = graph();
+        ArrayDeque<Commit> pending = new ArrayDeque<Commit>();
+        pending.push(getCommit(sha));
+        while (!pending.isEmpty()) {
+            Commit next = pending.peek();
+            boolean ready = true;
+            for (ObjectId parent : new ObjectId[] {
+                    next.getparentHash(), next.getsecondParentHash() }) {
+                if (parent != null && commitGraph.position(parent)
+                    == CommitGraph.NONE) {
+                    pending.push(getCommit(parent));
+                    ready = false;
+                }
+            }
+            if (ready) {
+                commitGraph.add(pending.pop());
+            }
+        }
+    }
+    /** Returns the index of commit SHA1s, opening it on first use. */
+    private IdIndex ids() {
+        if (ids == null) {
+            ids = new IdIndex(new File(homedir, "commit-ids"),
+                              new File(homedir, "commit-ids.log"),
+                              new File(homedir, commitdir));
+        }
+        return ids;
+    }
+    /** Returns the SHA1s of every commit in the repository. */
+    List<ObjectId> allCommits() {
+        List<ObjectId> result = new ArrayList<ObjectId>();
+        for (String name : Utils.plainFilenamesIn(homedir + "/" + commitdir)) {
+            if (ObjectId.isId(name)) {
+                result.add(ObjectId.fromHex(name));
+            }
+        }
+        return result;
+    }
+    /** Returns the commit whose SHA1 starts with COMMITID, which must
+     * have at least IdIndex.MIN_PREFIX digits. If there is no such
+     * commit, or more than one, says so and returns null. */
+    Commit findCommit(String commitID) {
+        if (ObjectId.isId(commitID)) {
+            Commit commit = getCommit(ObjectId.fromHex(commitID));
+            if (commit != null) {
+                return commit;
+            }
+        }
+        List<ObjectId> candidates = ids().resolve(commitID);
+        if (candidates.size() == 1) {
+            return getCommit(candidates.get(0));
+        } else if (candidates.isEmpty()) {
+            System.out.println("No commit with that id exists.");
+        } else {
+            System.out.println("Commit id " + commitID + " is ambiguous;"
+                + " it could be any of:");
+            for (ObjectId candidate : candidates) {
+                System.out.println(candidate);
+            }
+        }
+        return null;
     }
     /** The init method of gitlet
      * that create a .gitlet, .staging,
@@ -111,54 +366,129 @@ public class Gitlet implements Serializable {
             staging.mkdir();
             File blobs = new File(git, ".blobs");
             blobs.mkdir();
+            new File(git, commitdir).mkdir();
+            new File(git, refdir).mkdir();
+            new File(git, ".trees").mkdir();
+            writeCommit(head);
+            writePointer();
         } else {
             System.out.println("A gitlet version-control system already"
                 + " exists in the current directory.");
         }
     }
-    /** Add the file corresponding to FILENAME to the staging area. */
+    /** Add the file corresponding to FILENAME, which may be in a
+     * subdirectory, to the staging area. */
     void add(String fileName) {
-        if (rmNotCommitted.contains(fileName)) {
-            rmNotCommitted.remove(fileName);
-        }
-        if (removedFiles.contains(fileName)) {
-            removedFiles.remove(fileName);
-        }
-        File file = new File(fileName);
-        if (!file.exists()) {
-            System.out.println("File does not exist.");
-            return;
-        }
-        byte[] read = Utils.readContents(file);
-        String fileSha = Utils.sha1(read);
-        if (stagedfiles.containsKey(file.getName())) {
-            if (!stagedfiles.containsValue(fileSha)) {
-                File oldFile = new File(homedir + "/" + stagingdir
-                    + "/" + stagedfiles.get(file.getName()));
-                oldFile.delete();
-                stagedfiles.put(file.getName(), fileSha);
-                File newFile = new File(homedir + "/" + stagingdir
-                    + "/" + fileSha);
-                Utils.writeContents(newFile, read);
+        add(List.of(fileName));
+    }
+    /** Adds to the staging area the working files named by PATTERNS,
+     * each a file, a directory, standing for every file below it, or
+     * a glob, such as "*.txt" or "src/**.java", matched against the
+     * paths of the working files.  Nothing is staged if some pattern
+     * names no file.  The files are hashed, and those changed staged,
+     * in parallel. */
+    void add(List<String> patterns) {
+        TreeSet<String> names = new TreeSet<String>();
+        List<String> working = null;
+        for (String pattern : patterns) {
+            List<String> found;
+            if (WorkingTree.isGlob(pattern)) {
+                if (working == null) {
+                    working = workingTree.files(".");
+                }
+                try {
+                    found = WorkingTree.glob(pattern, working);
+                } catch (PatternSyntaxException excp) {
+                    System.out.println("Invalid glob pattern.");
+                    return;
+                }
             } else {
+                found = workingTree.files(pattern);
+            }
+            if (found.isEmpty()) {
+                System.out.println("File does not exist.");
                 return;
             }
+            names.addAll(found);
         }
-        if (!stagedfiles.containsKey(file.getName())) {
-            if (head.getTracking().containsKey(fileName)) {
-                String headSha = head.getTracking().get(fileName);
-                if (headSha.equals(fileSha)) {
-                    return;
+        stageAll(workingTree.hash(names.toArray(new String[0])));
+    }
+    /** Stages every change to the working directory: the files added or
+     * modified since the last commit or add, and the removal of those
+     * deleted. */
+    void addAll() {
+        SortedMap<String, ObjectId> working = workingTree.scan();
+        TreeMap<String, ObjectId> changed = new TreeMap<String, ObjectId>();
+        for (TreeDiff.Entry entry : TreeDiff.diff(index(), working)) {
+            String name = entry.name();
+            if (entry.oursChange() != TreeDiff.Change.DELETED) {
+                changed.put(name, working.get(name));
+            } else {
+                stagedfiles.remove(name);
+                if (tracked(head, name) != null) {
+                    rmNotCommitted.add(name);
+                    removedFiles.add(name);
+                }
+            }
+        }
+        stageAll(changed);
+    }
+    /** Stages each of the working files in SHAS, which maps their paths
+     * to the SHA1s of their contents, unless it is staged or committed
+     * as it is, writing the blobs to stage in parallel. */
+    private void stageAll(TreeMap<String, ObjectId> shas) {
+        LinkedHashMap<ObjectId, String> toStage =
+            new LinkedHashMap<ObjectId, String>();
+        for (Map.Entry<String, ObjectId> entry : shas.entrySet()) {
+            String fileName = entry.getKey();
+            ObjectId fileSha = entry.getValue();
+            rmNotCommitted.remove(fileName);
+            removedFiles.remove(fileName);
+            ObjectId staged = stagedfiles.get(fileName);
+            if (fileSha.equals(staged)) {
+                continue;
+            }
+            if (staged != null) {
+                stagedfiles.remove(fileName);
+                if (!stagedfiles.containsValue(staged)) {
+                    new File(homedir + "/" + stagingdir + "/" + staged)
+                        .delete();
                 }
+            } else if (fileSha.equals(tracked(head, fileName))) {
+                continue;
             }
+            stagedfiles.put(fileName, fileSha);
+            toStage.putIfAbsent(fileSha, fileName);
+        }
+        List<ObjectId> blobShas = new ArrayList<ObjectId>(toStage.keySet());
+        ForkJoinPool pool = blobShas.size() > 1 ? workingTree.pool() : null;
+        BlobStore.inParallel(pool, blobShas.size(), i -> {
+            ObjectId sha = blobShas.get(i);
             File stagedFile = new File(homedir + "/" + stagingdir
-                + "/" + fileSha);
-            Utils.writeContents(stagedFile, read);
-            stagedfiles.put(file.getName(), fileSha);
+                + "/" + sha);
+            if (!stagedFile.isFile()) {
+                stage(new File(toStage.get(sha)), stagedFile);
+            }
+        });
+    }
+    /** Writes the working FILE to the staging area as STAGEDFILE, as a
+     * manifest of chunks if it is large and chunking is on, when its
+     * new chunks go straight into the store. */
+    private void stage(File file, File stagedFile) {
+        if (chunking && file.length() >= BlobStore.MIN_CHUNKED) {
+            blobs.writeChunked(file, stagedFile, compression,
+                               workingTree.pool());
+        } else {
+            BlobCodec.encode(file, stagedFile, compression);
         }
     }
     /** Commit the files with this MESSAGE. */
     void commit(String message) {
+        commit(message, null);
+    }
+    /** Commits with MESSAGE, recording SECONDPARENT as the commit merged
+     * in if it is not null. */
+    void commit(String message, ObjectId secondParent) {
         if (message.equals("")) {
             System.out.println("Please enter a commit message.");
             return;
@@ -167,82 +497,207 @@ public class Gitlet implements Serializable {
             System.out.println("No changes added to the commit.");
             return;
         }
-        String parentHash = head.hashName();
-        TreeMap<String, String> trackingMap = new TreeMap<String, String>();
-        trackingMap.putAll(stagedfiles);
-        for (String key: head.getTracking().keySet()) {
-            if (rmNotCommitted.contains(key)) {
-                trackingMap.remove(key);
-                continue;
-            }
-            if (!trackingMap.containsKey(key)) {
-                trackingMap.put(key, head.getTracking().get(key));
-            }
+        ObjectId parentHash = head.hashName();
+        TreeMap<String, ObjectId> changes =
+            new TreeMap<String, ObjectId>(stagedfiles);
+        for (String key : rmNotCommitted) {
+            changes.put(key, null);
         }
+        ObjectId tree = trees.update(head.getTree(), changes);
         DateFormat time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         Date date = new Date();
-        Commit commit = new Commit(message, parentHash, trackingMap,
-            time.format(date), date);
-        String commitHash = commit.hashName();
-        commits.put(commitHash, commit);
+        Commit commit = new Commit(message, parentHash, secondParent,
+            tree, time.format(date), date);
+        writeCommit(commit);
+        Commit parent = head;
         head = commit;
-        branches.put(currBranch, head);
+        branches.put(currBranch, head.hashName());
         for (String key : stagedfiles.keySet()) {
-            String sha = stagedfiles.get(key);
+            ObjectId sha = stagedfiles.get(key);
             File stagedFile = new File(homedir + "/" + stagingdir + "/" + sha);
-            byte[] read = Utils.readContents(stagedFile);
-            File blob = new File(homedir + "/" + blobdir + "/" + sha);
-            Utils.writeContents(blob, read);
+            blobs.moveIn(sha, stagedFile);
+            ObjectId previous = tracked(parent, key);
+            if (deltas && previous != null) {
+                blobs.deltify(previous, sha, compression, false);
+            }
         }
         stagedfiles.clear();
         rmNotCommitted.clear();
     }
     /** Remove the file with this FILENAME. */
     void remove(String fileName) {
-        if (!stagedfiles.containsKey(fileName)
-            && !head.getTracking().containsKey(fileName)) {
+        fileName = workingTree.path(fileName);
+        if (fileName == null || (!stagedfiles.containsKey(fileName)
+            && tracked(head, fileName) == null)) {
             System.out.println("No reason to remove the file.");
             return;
         }
         if (stagedfiles.containsKey(fileName)) {
             stagedfiles.remove(fileName);
         }
-        if (head.getTracking().containsKey(fileName)) {
+        if (tracked(head, fileName) != null) {
             rmNotCommitted.add(fileName);
             removedFiles.add(fileName);
-            Utils.restrictedDelete(fileName);
+            workingTree.delete(fileName);
             return;
         }
     }
+    /** Returns the SHA1 of the file PATH in COMMIT, or null if COMMIT
+     * does not track it. */
+    private ObjectId tracked(Commit commit, String path) {
+        return trees.get(commit.getTree(), path);
+    }
     /** The log message of all the commits on a certain branch. */
     void log() {
-        Commit currHead = head;
-        while (currHead != null) {
-            System.out.println("===");
-            System.out.println("Commit " + currHead.hashName());
-            System.out.println(currHead.getDate());
-            System.out.println(currHead.getMessage());
-            System.out.println();
-            currHead = commits.get(currHead.getparentHash());
+        log(new LogOptions());
+    }
+    /** The log message of the commits on the current branch selected
+     *  by OPTIONS.  The chain of parents is followed through the commit
+     *  graph, so that only the commits printed are read. */
+    void log(LogOptions options) {
+        PrintStream out = logStream();
+        CommitGraph commitGraph = graph();
+        int k = commitGraph.position(head.hashName());
+        for (Commit c = head; k == CommitGraph.NONE && c != null
+                 && !options.done(); c = getCommit(c.getparentHash())) {
+            k = commitGraph.position(c.hashName());
+            if (k == CommitGraph.NONE && options.select(c.getDateobj())) {
+                printCommit(out, c);
+            }
         }
+        while (k != CommitGraph.NONE && !options.done()) {
+            if (options.select(new Date(commitGraph.date(k)))) {
+                printCommit(out, getCommit(commitGraph.id(k)));
+            }
+            k = commitGraph.parent(k);
+        }
+        out.flush();
     }
     /** The log message of all the commits. */
     void globalLog() {
-        for (Commit val : commits.values()) {
-            System.out.println("===");
-            System.out.println("Commit " + val.hashName());
-            System.out.println(val.getDate());
-            System.out.println(val.getMessage());
-            System.out.println();
+        globalLog(new LogOptions());
+    }
+    /** The log message of all the commits selected by OPTIONS, newest
+     *  first if OPTIONS asks for them sorted. */
+    void globalLog(LogOptions options) {
+        PrintStream out = logStream();
+        if (options.sorted()) {
+            sortedLog(out, options);
+        } else {
+            for (ObjectId sha : allCommits()) {
+                if (options.done()) {
+                    break;
+                }
+                Commit val = getCommit(sha);
+                if (options.select(val.getDateobj())) {
+                    printCommit(out, val);
+                }
+            }
+        }
+        out.flush();
+    }
+    /** Prints the commits selected by OPTIONS to OUT, newest first,
+     *  breaking ties by SHA1.  Rather than sorting every commit, merges
+     *  the chains of parents starting at each tip, a commit that is no
+     *  other's parent: FRONTIER holds the newest unprinted commit of
+     *  each chain.  The walk is made over the commit graph, so that
+     *  only the commits printed are read. */
+    private void sortedLog(PrintStream out, LogOptions options) {
+        CommitGraph commitGraph = graph();
+        int size = commitGraph.size();
+        boolean[] parents = new boolean[size];
+        for (int k = 0; k < size; k += 1) {
+            for (int parent : new int[] {
+                    commitGraph.parent(k), commitGraph.secondParent(k) }) {
+                if (parent != CommitGraph.NONE) {
+                    parents[parent] = true;
+                }
+            }
+        }
+        PriorityQueue<Integer> frontier = new PriorityQueue<Integer>(
+            Comparator.comparingLong((Integer k) -> -commitGraph.date(k))
+            .thenComparing(commitGraph::id));
+        for (int k = 0; k < size; k += 1) {
+            if (!parents[k]) {
+                frontier.add(k);
+            }
+        }
+        boolean[] printed = new boolean[size];
+        while (!frontier.isEmpty() && !options.done()) {
+            int next = frontier.poll();
+            if (printed[next]) {
+                continue;
+            }
+            printed[next] = true;
+            if (options.select(new Date(commitGraph.date(next)))) {
+                printCommit(out, getCommit(commitGraph.id(next)));
+            }
+            for (int parent : new int[] { commitGraph.parent(next),
+                                          commitGraph.secondParent(next) }) {
+                if (parent != CommitGraph.NONE && !printed[parent]) {
+                    frontier.add(parent);
+                }
+            }
         }
     }
+    /** Returns a stream buffering log output to System.out, which must
+     *  be flushed once the log is printed. */
+    private static PrintStream logStream() {
+        return new PrintStream(new BufferedOutputStream(System.out,
+                                                        Utils.BUFFER_SIZE),
+                               false);
+    }
+    /** Prints the log message of COMMIT to OUT. */
+    private static void printCommit(PrintStream out, Commit commit) {
+        out.print("===\nCommit ");
+        out.print(commit.hashName());
+        out.print('\n');
+        out.print(commit.getDate());
+        out.print('\n');
+        out.print(commit.getMessage());
+        out.print("\n\n");
+    }
     /** Find the commit ID with this COMMITMES.*/
     void find(String commitMes) {
+        printFound(messages().exact(commitMes),
+            val -> val.getMessage().equals(commitMes));
+    }
+    /** Find the commit IDs whose message contains TEXT if OPTION is
+     * --contains, or matches the regular expression TEXT somewhere if
+     * OPTION is --grep. */
+    void find(String option, String text) {
+        if (option.equals("--contains")) {
+            ArrayList<String> literals = new ArrayList<String>();
+            literals.add(text);
+            printFound(messages().containing(literals),
+                val -> val.getMessage().contains(text));
+        } else if (option.equals("--grep")) {
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(text);
+            } catch (PatternSyntaxException excp) {
+                System.out.println("Invalid regular expression.");
+                return;
+            }
+            printFound(messages().containing(MessageIndex.literals(text)),
+                val -> pattern.matcher(val.getMessage()).find());
+        } else {
+            System.out.println("Incorrect operands.");
+        }
+    }
+    /** Prints the ID of each of the CANDIDATES that satisfies TEST, or
+     * of each commit if CANDIDATES is null. */
+    private void printFound(Collection<ObjectId> candidates,
+                            Predicate<Commit> test) {
         boolean contained = false;
-        for (Commit val : commits.values()) {
-            if (val.getMessage().equals(commitMes)) {
+        if (candidates == null) {
+            candidates = allCommits();
+        }
+        for (ObjectId sha : candidates) {
+            Commit val = getCommit(sha);
+            if (val != null && test.test(val)) {
                 contained = true;
-                System.out.println(val.hashName());
+                System.out.println(sha);
             }
         }
         if (!contained) {
@@ -275,118 +730,66 @@ public class Gitlet implements Serializable {
         }
         System.out.println();
         System.out.println("=== Modifications Not Staged For Commit ===");
-        TreeSet<String> modified = modifications();
-        String currentDir = System.getProperty("user.dir");
-        File directory = new File(currentDir);
-        File[] workingDirFiles = directory.listFiles();
-        for (String file : modified) {
-            System.out.println(file);
+        SortedMap<String, ObjectId> working = workingTree.scan();
+        List<TreeDiff.Entry> changes = TreeDiff.diff(index(), working);
+        for (TreeDiff.Entry entry : changes) {
+            if (entry.oursChange() == TreeDiff.Change.MODIFIED) {
+                System.out.println(entry.name() + " (modified)");
+            } else if (entry.oursChange() == TreeDiff.Change.DELETED) {
+                System.out.println(entry.name() + " (deleted)");
+            }
         }
         System.out.println();
-        TreeSet<String> untracked = new TreeSet<String>();
         System.out.println("=== Untracked Files ===");
-        for (File file : workingDirFiles) {
-            if (file.isDirectory()) {
-                continue;
-            }
-            if (!head.getTracking().containsKey(file.getName())) {
-                if (!stagedfiles.containsKey(file.getName())) {
-                    untracked.add(file.getName());
-                }
+        for (TreeDiff.Entry entry : changes) {
+            if (entry.oursChange() == TreeDiff.Change.ADDED) {
+                System.out.println(entry.name());
             }
         }
-        for (String file : untracked) {
-            System.out.println(file);
-        }
     }
-    /** Returns a list of modified files.*/
-    TreeSet<String> modifications() {
-        TreeSet<String> modified = new TreeSet<String>();
-        String currentDir = System.getProperty("user.dir");
-        File directory = new File(currentDir);
-        ArrayList<String> fileNames = new ArrayList<String>();
-        File[] workingDirFiles = directory.listFiles();
-        for (File file : workingDirFiles) {
-            if (file.isDirectory()) {
-                continue;
-            }
-            fileNames.add(file.getName());
-            byte[] read = Utils.readContents(file);
-            String shaWorking = Utils.sha1(read);
-            if (stagedfiles.containsKey(file.getName())) {
-                String shaStaged = stagedfiles.get(file.getName());
-                if (!shaStaged.equals(shaWorking)) {
-                    modified.add(file.getName() + " (modified)");
-                    continue;
-                }
-            } else if (head.getTracking().containsKey(file.getName())) {
-                String headSha = head.getTracking().get(file.getName());
-                if (!shaWorking.equals(headSha)) {
-                    modified.add(file.getName() + " (modified)");
-                }
-            }
-        }
-        for (String file : stagedfiles.keySet()) {
-            if (!fileNames.contains(file)) {
-                modified.add(file + " (deleted)");
-            }
-        }
-        for (String file : head.getTracking().keySet()) {
-            if (!rmNotCommitted.contains(file)) {
-                if (!fileNames.contains(file)) {
-                    modified.add(file + " (deleted)");
-                }
-            }
-        }
-        return modified;
+    /** Returns the files the next commit would track, with their
+     * SHA1s: those of the head commit as changed by the staging
+     * area. */
+    private TreeMap<String, ObjectId> index() {
+        TreeMap<String, ObjectId> result = trees.flatten(head.getTree());
+        result.putAll(stagedfiles);
+        result.keySet().removeAll(rmNotCommitted);
+        return result;
     }
     /** The checkout method that checks out a file
      * by this FILENAME. */
     void checkout(String fileName) {
         String currentDir = System.getProperty("user.dir");
         File work = new File(currentDir + "/" + fileName);
-        if (!head.getTracking().containsKey(fileName)) {
+        fileName = workingTree.path(fileName);
+        ObjectId sha = fileName == null ? null : tracked(head, fileName);
+        if (sha == null) {
             System.out.println("File does not exist in that commit.");
             return;
         }
-        String sha = head.getTracking().get(fileName);
-        File fileToBeCheckedOut = new File(homedir + "/"
-            + blobdir + "/" + sha);
-        byte[] read = Utils.readContents(fileToBeCheckedOut);
-        Utils.writeContents(work, read);
+        blobs.checkout(sha, work);
+        workingTree.touched(fileName);
+        stats.record(fileName, sha);
     }
     /** The checkout method that checkouts out a file by
      * this FILENAME in the given commit by this COMMITID. */
     void checkout(String commitID, String fileName) {
-        Commit checkoutCom = null;
-        boolean exists = false;
-        for (String key: commits.keySet()) {
-            String subSHA1 = key.substring(0, 6);
-            String subcommitID = commitID.substring(0, 6);
-            if (subSHA1.equals(subcommitID)) {
-                checkoutCom = commits.get(key);
-                exists = true;
-                break;
-            }
-        }
-        if (!exists) {
-            System.out.println("No commit with that id exists.");
+        Commit checkoutCom = findCommit(commitID);
+        if (checkoutCom == null) {
             return;
         }
-        if (checkoutCom != null) {
-            if (!checkoutCom.getTracking().containsKey(fileName)) {
-                System.out.println("File does not exist in that commit.");
-                return;
-            } else {
-                String currentDir = System.getProperty("user.dir");
-                File work = new File(currentDir + "/" + fileName);
-                String sha = checkoutCom.getTracking().get(fileName);
-                File fileToBeCheckedOut = new File(homedir + "/"
-                    + blobdir + "/" + sha);
-                byte[] read = Utils.readContents(fileToBeCheckedOut);
-                Utils.writeContents(work, read);
-            }
+        String currentDir = System.getProperty("user.dir");
+        File work = new File(currentDir + "/" + fileName);
+        fileName = workingTree.path(fileName);
+        ObjectId sha = fileName == null ? null
+            : tracked(checkoutCom, fileName);
+        if (sha == null) {
+            System.out.println("File does not exist in that commit.");
+            return;
         }
+        blobs.checkout(sha, work);
+        workingTree.touched(fileName);
+        stats.record(fileName, sha);
     }
     /** The checkout method that checkouts the files
      * in this BRANCH with an arbitrary FAKENUMBER
@@ -400,37 +803,12 @@ public class Gitlet implements Serializable {
             System.out.println("No need to checkout the current branch.");
             return;
         }
-        String currentDir = System.getProperty("user.dir");
-        File directory = new File(currentDir);
-        File[] workingDirFiles = directory.listFiles();
-        Commit newHead = branches.get(branch);
-        for (File file : workingDirFiles) {
-            if (file.isDirectory()) {
-                continue;
-            }
-            byte[] read = Utils.readContents(file);
-            String fileSha = Utils.sha1(read);
-            if (newHead.getTracking().containsKey(file.getName())) {
-                if (!head.getTracking().containsValue(fileSha)) {
-                    System.out.println("There is an untracked file in the way;"
-                        + " delete it or add it first.");
-                    return;
-                }
-            }
-        }
-        for (String fileName : head.getTracking().keySet()) {
-            if (!newHead.getTracking().containsKey(fileName)) {
-                Utils.restrictedDelete(fileName);
-            }
-        }
-        for (String fileName : newHead.getTracking().keySet()) {
-            File work = new File(currentDir + "/" + fileName);
-            String sha = newHead.getTracking().get(fileName);
-            File fileToBeCheckedOut = new File(homedir + "/"
-                + blobdir + "/" + sha);
-            byte[] read = Utils.readContents(fileToBeCheckedOut);
-            Utils.writeContents(work, read);
+        Commit newHead = getCommit(branches.get(branch));
+        List<TreeDiff.Entry> changes = changes(head, newHead);
+        if (changes == null) {
+            return;
         }
+        update(changes);
         head = newHead;
         currBranch = branch;
         stagedfiles.clear();
@@ -438,7 +816,7 @@ public class Gitlet implements Serializable {
     /** Create a branch with this BRANCHNAME. */
     void branch(String branchName) {
         if (!branches.containsKey(branchName)) {
-            branches.put(branchName, head);
+            branches.put(branchName, head.hashName());
         } else {
             System.out.println("A branch with that name already exists");
         }
@@ -456,122 +834,113 @@ public class Gitlet implements Serializable {
     /** Checkout out the files in the commit
      * corresponding to this COMMITID. */
     void reset(String commitID) {
-        Commit checkoutCom = null;
-        boolean exists = false;
-        for (String key: commits.keySet()) {
-            String subSHA1 = key.substring(0, 6);
-            String subcommitID = commitID.substring(0, 6);
-            if (subSHA1.equals(subcommitID)) {
-                checkoutCom = commits.get(key);
-                exists = true;
-                break;
-            }
-        }
-        if (!exists) {
-            System.out.println("No commit with that id exists.");
+        Commit checkoutCom = findCommit(commitID);
+        if (checkoutCom == null) {
             return;
         }
-        String currentDir = System.getProperty("user.dir");
-        File directory = new File(currentDir);
-        File[] workingDirFiles = directory.listFiles();
-        for (File file : workingDirFiles) {
-            if (file.isDirectory()) {
-                continue;
-            }
-            byte[] read = Utils.readContents(file);
-            String fileSha = Utils.sha1(read);
-            String f = file.getName();
-            if (head.getTracking().containsKey(file.getName())) {
-                if (head.getTracking().get(f).equals(fileSha)) {
-                    if (!checkoutCom.getTracking().containsKey(f)) {
-                        Utils.restrictedDelete(file);
-                    }
-                } else {
-                    if (checkoutCom.getTracking().containsKey(f)) {
-                        System.out.println("There is an untracked file "
-                                + "in the way; delete it or add it first.");
-                        return;
-                    }
-                }
-            } else if (checkoutCom.getTracking().containsKey(f)) {
-                System.out.println("There is an untracked file in the way;"
-                    + " delete it or add it first.");
-                return;
-            }
-        }
-        if (checkoutCom != null) {
-            for (String fileName : checkoutCom.getTracking().keySet()) {
-                File work = new File(currentDir + "/" + fileName);
-                String sha = checkoutCom.getTracking().get(fileName);
-                File fileToBeCheckedOut = new File(homedir + "/" + blobdir
-                    + "/" + sha);
-                byte[] read = Utils.readContents(fileToBeCheckedOut);
-                Utils.writeContents(work, read);
-            }
+        List<TreeDiff.Entry> changes = changes(head, checkoutCom);
+        if (changes == null) {
+            return;
         }
-        branches.replace(currBranch, checkoutCom);
+        update(changes);
+        branches.replace(currBranch, checkoutCom.hashName());
         head = checkoutCom;
         stagedfiles.clear();
-
     }
-    /** Returns untracked files from GIVENCOMMIT and CURRCOMMIT. */
+    /** Returns untracked files from GIVENCOMMIT and CURRCOMMIT,
+     * ending the command by throwing GitletExit if there are any. */
     void findUntracked(Commit givenCommit, Commit currCommit) {
-        List<String> workingDirFiles = Utils.plainFilenamesIn(new File("."));
-        for (String f : workingDirFiles) {
-            File file = new File(f);
-            if (file.isDirectory()) {
-                continue;
-            }
-            byte[] read = Utils.readContents(file);
-            String fileSha = Utils.sha1(read);
-            if (givenCommit.getTracking().containsKey(f)) {
-                if (!currCommit.getTracking().containsKey(f)) {
-                    System.out.println("There is an untracked file in the way;"
-                        + " delete it or add it first.");
-                    System.exit(0);
-                } else if (!currCommit.getTracking().get(f).equals(fileSha)) {
-                    System.out.println("There is an untracked file in the way;"
-                        + " delete it or add it first.");
-                    System.exit(0);
-                }
+        if (changes(currCommit, givenCommit) == null) {
+            throw new GitletExit();
+        }
+    }
+    /** Returns the files that differ between the commits FROM, which
+     * must be the head, and TO, or null, after printing a message, if
+     * moving to TO would overwrite a working file that is untracked or
+     * has unstaged changes.  Only the files that differ are read. */
+    private List<TreeDiff.Entry> changes(Commit from, Commit to) {
+        List<TreeDiff.Entry> changes =
+            TreeDiff.diff(trees, from.getTree(), to.getTree());
+        TreeMap<String, ObjectId> working = workingShas(changes);
+        for (TreeDiff.Entry entry : changes) {
+            ObjectId sha = working.get(entry.name());
+            if (sha != null && entry.ours() != null
+                && !sha.equals(entry.base()) && !sha.equals(entry.ours())) {
+                System.out.println("There is an untracked file in the way;"
+                    + " delete it or add it first.");
+                return null;
             }
         }
+        return changes;
     }
-    /** Returns if merge composed of CURRCOMMIT, GIVENCOMMIT, SPLITNODE
-    with files in MODIFIED, UNMODIFIED, written to CURRENTDIR with
-    return a conflict or not represented by MERGED. */
-    boolean mergeHelper(Commit currCommit, Commit givenCommit,
-              Commit splitNode, HashSet<String> modified,
-              HashSet<String> unmodified, boolean merged) {
-        for (String key: givenCommit.getTracking().keySet()) {
-            if (splitNode.getTracking().containsValue
-                      (givenCommit.getTracking().get(key))) {
-                merged = true;
-                continue;
+    /** Makes the working files match the commit that the CHANGES from
+     * the head lead to: files it does not track are deleted unless they
+     * have unstaged changes, and files that differ are written.  Every
+     * other file is left alone.  Deletions come first, so that a
+     * directory they empty may be replaced by a file.  The numbers of
+     * files touched are counted for the trace. */
+    private void update(List<TreeDiff.Entry> changes) {
+        TreeMap<String, ObjectId> working = workingShas(changes);
+        for (TreeDiff.Entry entry : changes) {
+            String fileName = entry.name();
+            ObjectId current = working.get(fileName);
+            if (entry.ours() == null && current != null
+                && current.equals(entry.base())) {
+                workingTree.delete(fileName);
+                stats.forget(fileName);
+                Trace.count(Trace.Counter.FILES_DELETED, 1);
             }
-            if (unmodified.contains(key)) {
-                if (!givenCommit.getTracking().get(key).equals
-                          (currCommit.getTracking().get(key))) {
-                    merged = true;
-                    checkout(givenCommit.hashName(), key);
-                    add(key);
-                }
-            } else if (!splitNode.getTracking().containsKey(key)
-                    && !currCommit.getTracking().containsKey(key)) {
-                merged = true;
-                checkout(givenCommit.hashName(), key);
-                add(key);
+        }
+        for (TreeDiff.Entry entry : changes) {
+            String fileName = entry.name();
+            ObjectId current = working.get(fileName);
+            ObjectId sha = entry.ours();
+            if (sha != null && !sha.equals(current)) {
+                blobs.checkout(sha, new File(fileName));
+                workingTree.touched(fileName);
+                stats.record(fileName, sha);
+                Trace.count(Trace.Counter.FILES_WRITTEN, 1);
             }
         }
-        for (String key : unmodified) {
-            if (!givenCommit.getTracking().containsKey(key)) {
-                merged = true;
-                remove(key);
+    }
+    /** Returns the SHA1s of those files named in CHANGES that are in the
+     * working directory. */
+    private TreeMap<String, ObjectId> workingShas(
+            List<TreeDiff.Entry> changes) {
+        List<String> names = new ArrayList<String>();
+        for (TreeDiff.Entry entry : changes) {
+            if (new File(entry.name()).isFile()) {
+                names.add(entry.name());
+            }
+        }
+        return workingTree.hash(names.toArray(new String[names.size()]));
+    }
+    /** Moves the loose blobs into a pack, first storing each version
+     * of a file as a delta against the version after it where that
+     * pays, so that the newest versions are read whole. */
+    void repack() throws IOException {
+        if (deltas) {
+            for (ObjectId id : allCommits()) {
+                Commit commit = getCommit(id);
+                Commit parent = getCommit(commit.getparentHash());
+                if (parent == null) {
+                    continue;
+                }
+                for (TreeDiff.Entry entry : TreeDiff.diff(trees,
+                         parent.getTree(), commit.getTree())) {
+                    if (entry.oursChange() == TreeDiff.Change.MODIFIED) {
+                        blobs.deltify(entry.base(), entry.ours(),
+                                      compression, true);
+                    }
+                }
             }
         }
-        return merged;
+        blobs.repack();
     }
-    /** Merge current branch with BRANCHNAME. */
+    /** Merge current branch with BRANCHNAME.  Files changed only in the
+     * given branch since the split point are checked out and staged,
+     * or removed; files changed in different ways on both branches are
+     * replaced by a conflict, in which case nothing is committed. */
     void merge(String branchName) throws IOException {
         if (stagedfiles.size() > 0 || rmNotCommitted.size() > 0) {
             System.out.println("You have uncommitted changes.");
@@ -582,8 +951,8 @@ public class Gitlet implements Serializable {
             return;
         }
         File currentDir = new File(".");
-        Commit givenCommit = branches.get(branchName);
-        Commit currCommit = branches.get(currBranch);
+        Commit givenCommit = getCommit(branches.get(branchName));
+        Commit currCommit = getCommit(branches.get(currBranch));
         findUntracked(givenCommit, currCommit);
         if (currBranch.equals(branchName)) {
             System.out.println("Cannot merge a branch with itself.");
@@ -600,160 +969,72 @@ public class Gitlet implements Serializable {
             return;
         }
         if (splitNode.hashName().equals(currCommit.hashName())) {
-            branches.replace(currBranch, givenCommit);
+            branches.replace(currBranch, givenCommit.hashName());
             checkout(branchName, 0);
             System.out.println("Current branch fast-forwarded.");
             return;
         }
-        HashMap<String, HashSet<String>> modandUnmod =
-                  getFiles(currCommit, givenCommit, splitNode);
-        HashSet<String> unmodified = modandUnmod.get("unmodified");
-        HashSet<String> modified = modandUnmod.get("modified");
-        boolean merged = false;
-        merged = mergeHelper(currCommit, givenCommit, splitNode,
-                  modified, unmodified, merged);
-        merged = mergeConflictHelper(currCommit, givenCommit, splitNode,
-                modified, unmodified, merged, currentDir);
-        if (merged) {
-            commit("Merged " + currBranch + " with " + branchName + ".");
-            return;
-        } else {
-            System.out.println("Encountered a merge conflict.");
-        }
-    }
-    /** Returns if merge composed of CURRCOMMIT, GIVENCOMMIT, SPLITNODE
-    with files in MODIFIED, UNMODIFIED, written to CURRENTDIR with
-    return a conflict or not represented by MERGED. */
-    boolean mergeConflictHelper(Commit currCommit, Commit givenCommit,
-          Commit splitNode, HashSet<String> modified,
-          HashSet<String> unmodified,
-          boolean merged, File currentDir) throws IOException {
-        for (String key : modified) {
-            String sha1Curr = currCommit.getTracking().get(key);
-            String sha1Given = givenCommit.getTracking().get(key);
-            if (givenCommit.getTracking().containsKey(key)
-                && currCommit.getTracking().containsKey(key)) {
-                if (!sha1Curr.equals(sha1Given)) {
-                    if (sha1Curr.equals(splitNode.getTracking().get(key))) {
-                        continue;
-                    } else if (sha1Given.equals
-                              (splitNode.getTracking().get(key))) {
-                        continue;
-                    } else {
-                        merged = false;
-                        mergeConflict(sha1Curr, sha1Given, currentDir, key);
-                    }
-                }
-            } else {
-                if (splitNode.getTracking().containsKey(key)) {
-                    merged = false;
-                    mergeConflict(sha1Curr, sha1Given, currentDir, key);
-                }
+        boolean conflict = false;
+        for (TreeDiff.Entry entry : TreeDiff.diff(trees, splitNode.getTree(),
+                 currCommit.getTree(), givenCommit.getTree())) {
+            if (entry.theirsChange() == TreeDiff.Change.UNCHANGED
+                || entry.sameOnBothSides()) {
+                continue;
             }
-        }
-        return merged;
-    }
-    /** Return a HASHMAP that maps modified to a list of
-    *  modified file and unmodified to a list of unmodified
-    * files. This hashmap is composed of CURRCOMMIT, GIVENCOMMIT
-    and SPLITNODE. */
-    HashMap<String, HashSet<String>> getFiles(Commit currCommit,
-        Commit givenCommit, Commit splitNode) {
-        HashMap<String, HashSet<String>>
-            allFiles = new HashMap<String, HashSet<String>>();
-        HashSet<String> modified = new HashSet<String>();
-        HashSet<String> unmodified = new HashSet<String>();
-        for (String key : currCommit.getTracking().keySet()) {
-            String sha = currCommit.getTracking().get(key);
-            if (splitNode.getTracking().containsValue(sha)) {
-                unmodified.add(key);
+            String key = entry.name();
+            if (entry.oursChange() != TreeDiff.Change.UNCHANGED) {
+                conflict = true;
+                mergeConflict(entry.ours(), entry.theirs(), currentDir, key);
+            } else if (entry.theirs() == null) {
+                remove(key);
             } else {
-                modified.add(key);
+                checkout(givenCommit.hashName().toString(), key);
+                add(key);
             }
         }
-        for (String key : givenCommit.getTracking().keySet()) {
-            String sha = givenCommit.getTracking().get(key);
-            if (!splitNode.getTracking().containsValue(sha)) {
-                modified.add(key);
-            } else {
-                unmodified.add(key);
-            }
+        if (conflict) {
+            System.out.println("Encountered a merge conflict.");
+        } else {
+            commit("Merged " + currBranch + " with " + branchName + ".",
+                   givenCommit.hashName());
         }
-        allFiles.put("modified", modified);
-        allFiles.put("unmodified", unmodified);
-        return allFiles;
     }
     /** Write to a file if there merge conflict given
      * the given the SHA1CURR of a file in the current commit,
      * SHA1GIVEN of a file in the given commit,
-     * the CURRENTDIR, and fileName which is KEY. */
-    void mergeConflict(String sha1Curr, String sha1Given, File currentDir,
-        String key) throws IOException {
+     * the CURRENTDIR, and fileName which is KEY. Both sides are
+     * streamed into the file rather than read into memory. */
+    void mergeConflict(ObjectId sha1Curr, ObjectId sha1Given,
+        File currentDir, String key) throws IOException {
         File work = new File(currentDir + "/" + key);
+        Files.deleteIfExists(work.toPath());
+        work.getParentFile().mkdirs();
         String h = "<<<<<<< HEAD\n";
         String equals = "=======\n";
         String end = ">>>>>>>\n";
-        File fileCurrBranch = new File(homedir + "/" + blobdir
-            + "/" + sha1Curr);
-        File fileGivenBranch = new File(homedir + "/" + blobdir
-             + "/" + sha1Given);
-        byte[] readCurr;
-        byte[] readGiven;
-        String empty = "";
-        if (sha1Curr == null) {
-            readCurr = empty.getBytes();
-            readGiven = Utils.readContents(fileGivenBranch);
-        } else if (sha1Given == null) {
-            readGiven = empty.getBytes();
-            readCurr = Utils.readContents(fileCurrBranch);
-        } else {
-            readGiven = Utils.readContents(fileGivenBranch);
-            readCurr = Utils.readContents(fileCurrBranch);
-        }
-        byte[] readHead = h.getBytes();
-        byte[] readEquals = equals.getBytes();
-        byte[] readEnd = end.getBytes();
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        outputStream.write(readHead);
-        outputStream.write(readCurr);
-        outputStream.write(readEquals);
-        outputStream.write(readGiven);
-        outputStream.write(readEnd);
-        byte[] finalResult = outputStream.toByteArray();
-        Utils.writeContents(work, finalResult);
+        try (OutputStream out = new BufferedOutputStream(
+                 new FileOutputStream(work), Utils.BUFFER_SIZE)) {
+            out.write(h.getBytes());
+            if (sha1Curr != null) {
+                try (InputStream in = blobs.open(sha1Curr)) {
+                    Utils.copy(in, out);
+                }
+            }
+            out.write(equals.getBytes());
+            if (sha1Given != null) {
+                try (InputStream in = blobs.open(sha1Given)) {
+                    Utils.copy(in, out);
+                }
+            }
+            out.write(end.getBytes());
+        }
+        workingTree.touched(key);
     }
     /** Returns the commit that is the split node given
-     * the CURRCOMMIT and the GIVENCOMMIT. */
+     * the CURRCOMMIT and the GIVENCOMMIT: their nearest common
+     * ancestor, found through the commit graph. */
     Commit findSplitNode(Commit currCommit, Commit givenCommit) {
-        Commit laterTime = null;
-        Commit earlierTime = null;
-        Commit splitNode = null;
-        Date currComDate = currCommit.getDateobj();
-        Date givenComDate = givenCommit.getDateobj();
-        Integer compare = currComDate.compareTo(givenComDate);
-        if (compare > 0) {
-            laterTime = currCommit;
-            earlierTime = givenCommit;
-        } else {
-            laterTime = givenCommit;
-            earlierTime = currCommit;
-        }
-        while (laterTime != null) {
-            String parentHashLater = laterTime.getparentHash();
-            Commit parentLater = commits.get(parentHashLater);
-            Date parentLaterDate = parentLater.getDateobj();
-            Date earlierTimeDate = earlierTime.getDateobj();
-            Integer compareDate = parentLaterDate.compareTo(earlierTimeDate);
-            if (compareDate > 0) {
-                laterTime = parentLater;
-            } else if (compareDate < 0) {
-                laterTime = earlierTime;
-                earlierTime = parentLater;
-            } else {
-                laterTime = null;
-                splitNode = parentLater;
-            }
-        }
-        return splitNode;
+        return getCommit(graph().mergeBase(currCommit.hashName(),
+                                           givenCommit.hashName()));
     }
 }
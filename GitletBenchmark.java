@@ -0,0 +1,242 @@
+package gitlet;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmarks of the Gitlet commands on repositories made by
+ *  RepoGenerator.  Each benchmark does what Main does for one command:
+ *  reads the repository's state, runs the command and writes the state
+ *  back, so that it times a whole command but for starting the JVM;
+ *  loadStore times reading and writing the state alone.  Commands that
+ *  need the repository in some state first, such as commit needing a
+ *  change staged, get it in an untimed setup before each call.
+ *
+ *  Gitlet works in the current directory, so the benchmarks must be
+ *  run from an empty scratch directory, in which each fork generates
+ *  its repository; what Gitlet prints is thrown away.  This class needs
+ *  JMH, which the rest of Gitlet does not, to build and run:
+ *
+ *    javac -cp jmh-core.jar:jmh-generator-annprocess.jar -d out *.java
+ *    cd $(mktemp -d)
+ *    java -cp out:jmh-core.jar:jopt-simple.jar:commons-math3.jar \
+ *        org.openjdk.jmh.Main gitlet.GitletBenchmark -p files=1000
+ *
+ *  @author Ruihan Zhao and Emily Pedersen. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GitletBenchmark {
+
+    /** A repository generated for a trial, of the shape given by the
+     *  parameters, as RepoGenerator takes them. */
+    @State(Scope.Benchmark)
+    public static class Repo {
+        /** Commits after the first. */
+        @Param({ "100", "1000" })
+        public int commits;
+        /** Number of files. */
+        @Param({ "100", "1000" })
+        public int files;
+        /** Size of each file. */
+        @Param({ "4096" })
+        public int fileSize;
+        /** Branches besides master. */
+        @Param({ "3" })
+        public int branches;
+        /** Fraction of the files of a branch changed by a commit. */
+        @Param({ "0.01" })
+        public double churn;
+
+        /** Generates the repository in the current directory, silencing
+         *  Gitlet. */
+        @Setup(Level.Trial)
+        public void generate() {
+            _stdout = System.out;
+            _stderr = System.err;
+            PrintStream nowhere =
+                new PrintStream(OutputStream.nullOutputStream());
+            System.setOut(nowhere);
+            System.setErr(nowhere);
+            Gitlet gitlet = new RepoGenerator(commits, files, fileSize,
+                                              branches, churn, 0).generate();
+            _master = gitlet.getBranches().get("master").toString();
+        }
+
+        /** Lets Gitlet print again. */
+        @TearDown(Level.Trial)
+        public void restore() {
+            System.setOut(_stdout);
+            System.setErr(_stderr);
+        }
+
+        /** Returns the SHA1 of the head of master as generated. */
+        String master() {
+            return _master;
+        }
+
+        /** System.out before the trial. */
+        private PrintStream _stdout;
+        /** System.err before the trial. */
+        private PrintStream _stderr;
+        /** SHA1 of the head of master as generated. */
+        private String _master;
+    }
+
+    /** A working directory with a new version of a file, for add. */
+    @State(Scope.Thread)
+    public static class Edited {
+        /** Writes a new version of the first file. */
+        @Setup(Level.Invocation)
+        public void edit() {
+            _version += 1;
+            GitletBenchmark.edit(_version);
+        }
+
+        /** Number of versions written. */
+        private int _version;
+    }
+
+    /** A repository with a change staged, for commit. */
+    @State(Scope.Thread)
+    public static class Staged {
+        /** Stages a new version of the first file. */
+        @Setup(Level.Invocation)
+        public void stage() {
+            _version += 1;
+            edit(_version);
+            Gitlet gitlet = load();
+            gitlet.add(RepoGenerator.file(0));
+            gitlet.writePointer();
+        }
+
+        /** Number of versions staged. */
+        private int _version;
+    }
+
+    /** A repository whose master is as generated, for merge. */
+    @State(Scope.Thread)
+    public static class Unmerged {
+        /** Resets master of REPO to its head as generated, undoing the
+         *  last merge. */
+        @Setup(Level.Invocation)
+        public void reset(Repo repo) {
+            Gitlet gitlet = load();
+            gitlet.reset(repo.master());
+            gitlet.writePointer();
+        }
+    }
+
+    /** Alternates the branch checked out, for checkout. */
+    @State(Scope.Thread)
+    public static class Switching {
+        /** Returns the branch to check out next, which is the other of
+         *  master and b1. */
+        String next() {
+            _onBranch = !_onBranch;
+            return RepoGenerator.branch(_onBranch ? 1 : 0);
+        }
+
+        /** True iff b1 is checked out. */
+        private boolean _onBranch;
+    }
+
+    /** Writes VERSION of the first file. */
+    static void edit(int version) {
+        Utils.writeContents(new File(RepoGenerator.file(0)),
+                            "version " + version + "\n");
+    }
+
+    /** Returns the state of the repository in the current directory. */
+    static Gitlet load() {
+        return Gitlet.readPointer(new File(".gitlet"));
+    }
+
+    /** Reads and writes back the state of the repository of REPO. */
+    @Benchmark
+    public Gitlet loadStore(Repo repo) {
+        Gitlet gitlet = load();
+        gitlet.writePointer();
+        return gitlet;
+    }
+
+    /** Runs status on REPO. */
+    @Benchmark
+    public Gitlet status(Repo repo) {
+        Gitlet gitlet = load();
+        gitlet.status();
+        gitlet.writePointer();
+        return gitlet;
+    }
+
+    /** Runs log -n 10 on REPO. */
+    @Benchmark
+    public Gitlet logRecent(Repo repo) {
+        Gitlet gitlet = load();
+        gitlet.log(LogOptions.parse(new String[] { "-n", "10" }, 0, false));
+        gitlet.writePointer();
+        return gitlet;
+    }
+
+    /** Runs log on REPO, printing all of master's history. */
+    @Benchmark
+    public Gitlet log(Repo repo) {
+        Gitlet gitlet = load();
+        gitlet.log();
+        gitlet.writePointer();
+        return gitlet;
+    }
+
+    /** Adds a file of REPO changed as in EDITED. */
+    @Benchmark
+    public Gitlet add(Repo repo, Edited edited) {
+        Gitlet gitlet = load();
+        gitlet.add(RepoGenerator.file(0));
+        gitlet.writePointer();
+        return gitlet;
+    }
+
+    /** Commits the change staged in REPO as in STAGED. */
+    @Benchmark
+    public Gitlet commit(Repo repo, Staged staged) {
+        Gitlet gitlet = load();
+        gitlet.commit("benchmark");
+        gitlet.writePointer();
+        return gitlet;
+    }
+
+    /** Checks out in REPO the branch given by SWITCHING. */
+    @Benchmark
+    public Gitlet checkout(Repo repo, Switching switching) {
+        Gitlet gitlet = load();
+        gitlet.checkout(switching.next(), 0);
+        gitlet.writePointer();
+        return gitlet;
+    }
+
+    /** Merges b1 into master of REPO, reset as in UNMERGED. */
+    @Benchmark
+    public Gitlet merge(Repo repo, Unmerged unmerged) throws Exception {
+        Gitlet gitlet = load();
+        gitlet.merge(RepoGenerator.branch(1));
+        gitlet.writePointer();
+        return gitlet;
+    }
+}
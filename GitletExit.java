@@ -0,0 +1,16 @@
+package gitlet;
+
+/** Thrown to end a command early, once it has printed why, without
+ *  storing the repository's state.  Commands throw it rather than
+ *  calling System.exit so that a daemon running many commands outlives
+ *  each of them.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class GitletExit extends RuntimeException {
+    /** Version of the serialized form, which is never used. */
+    private static final long serialVersionUID = 1L;
+
+    /** An early end of a command. */
+    GitletExit() {
+        super(null, null, false, false);
+    }
+}
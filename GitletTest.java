@@ -32,7 +32,7 @@ public class GitletTest {
         assertEquals(2, gitlet.getCommits().size());
         Commit curr = gitlet.getHead();
         System.out.println(curr.getMessage());
-        String parentHash = curr.getparentHash();
+        ObjectId parentHash = curr.getparentHash();
         Commit initial = gitlet.getCommits().get(parentHash);
         System.out.println(initial.getparentHash());
         gitlet.commit("Commiting test2.txt");
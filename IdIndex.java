@@ -0,0 +1,193 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/** A persistent index of the SHA1s of all commits, used to resolve
+ *  abbreviated commit ids.  It is kept in two files: a sorted table
+ *  of SHA1s behind a 256-entry fan-out table, like a pack index,
+ *  which is searched through a memory map; and a short journal to
+ *  which new commits are appended.  Once the journal holds more than
+ *  JOURNAL_LIMIT entries it is merged into the table.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class IdIndex {
+    /** Fewest hexadecimal digits accepted as an abbreviated id. */
+    static final int MIN_PREFIX = 4;
+    /** Most commits held by the journal before it is merged. */
+    static final int JOURNAL_LIMIT = 256;
+    /** First four bytes of the table. */
+    private static final int MAGIC = 0x47434931;
+    /** Size of the table's header and fan-out table in bytes. */
+    private static final int HEADER = 4 + 256 * 4;
+
+    /** An index kept in TABLE and JOURNAL, rebuilt from the names of
+     *  the files in COMMITDIR if neither exists. */
+    IdIndex(File table, File journal, File commitDir) {
+        _table = table;
+        _journal = journal;
+        if (!table.exists() && !journal.exists()) {
+            TreeSet<ObjectId> all = new TreeSet<ObjectId>();
+            List<String> names = Utils.plainFilenamesIn(commitDir);
+            if (names != null) {
+                for (String name : names) {
+                    if (ObjectId.isId(name)) {
+                        all.add(ObjectId.fromHex(name));
+                    }
+                }
+            }
+            writeTable(all);
+        }
+    }
+
+    /** Records the commit named ID. */
+    void add(ObjectId id) {
+        try (FileOutputStream out = new FileOutputStream(_journal, true)) {
+            out.write(id.toBytes());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (_journal.length() > JOURNAL_LIMIT * ObjectId.LENGTH) {
+            TreeSet<ObjectId> all = journal();
+            ByteBuffer table = table();
+            for (int k = 0; k < size(table); k += 1) {
+                all.add(ObjectId.fromBuffer(table, HEADER
+                                            + k * ObjectId.LENGTH));
+            }
+            writeTable(all);
+            _journal.delete();
+        }
+    }
+
+    /** Returns the SHA1s of all commits whose hexadecimal form starts
+     *  with PREFIX, in sorted order.  PREFIX must have at least
+     *  MIN_PREFIX hexadecimal digits. */
+    List<ObjectId> resolve(String prefix) {
+        String lowHex = pad(prefix, '0');
+        String highHex = pad(prefix, 'f');
+        if (lowHex == null || prefix.length() < MIN_PREFIX) {
+            return new ArrayList<ObjectId>();
+        }
+        ObjectId low = ObjectId.fromHex(lowHex);
+        ObjectId high = ObjectId.fromHex(highHex);
+        TreeSet<ObjectId> result = new TreeSet<ObjectId>();
+        ByteBuffer table = table();
+        if (table != null) {
+            int first = low.firstByte();
+            int lo = first == 0 ? 0 : table.getInt(4 + (first - 1) * 4);
+            int hi = table.getInt(4 + first * 4);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (low.compareTo(table, HEADER + mid * ObjectId.LENGTH) > 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            for (int k = lo; k < size(table); k += 1) {
+                ObjectId id = ObjectId.fromBuffer(table,
+                                                  HEADER + k * ObjectId.LENGTH);
+                if (id.compareTo(high) > 0) {
+                    break;
+                }
+                result.add(id);
+            }
+        }
+        for (ObjectId id : journal()) {
+            if (id.compareTo(low) >= 0 && id.compareTo(high) <= 0) {
+                result.add(id);
+            }
+        }
+        return new ArrayList<ObjectId>(result);
+    }
+
+    /** Returns PREFIX padded to a full SHA1 with FILL, or null if
+     *  PREFIX is not the beginning of a SHA1. */
+    private static String pad(String prefix, char fill) {
+        if (prefix.length() > ObjectId.HEX_LENGTH) {
+            return null;
+        }
+        StringBuilder result = new StringBuilder(prefix.toLowerCase());
+        while (result.length() < ObjectId.HEX_LENGTH) {
+            result.append(fill);
+        }
+        String hex = result.toString();
+        return ObjectId.isId(hex) ? hex : null;
+    }
+
+    /** Returns the number of SHA1s in TABLE. */
+    private static int size(ByteBuffer table) {
+        return table == null ? 0 : table.getInt(HEADER - 4);
+    }
+
+    /** Returns the mapped table, or null if there is none. */
+    private ByteBuffer table() {
+        if (_mapped == null && _table.isFile()) {
+            try (RandomAccessFile in = new RandomAccessFile(_table, "r")) {
+                _mapped = in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                                              0, in.length());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            if (_mapped.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("bad commit index");
+            }
+        }
+        return _mapped;
+    }
+
+    /** Returns the SHA1s in the journal. */
+    private TreeSet<ObjectId> journal() {
+        TreeSet<ObjectId> result = new TreeSet<ObjectId>();
+        if (_journal.isFile()) {
+            byte[] contents = Utils.readContents(_journal);
+            for (int off = 0; off + ObjectId.LENGTH <= contents.length;
+                 off += ObjectId.LENGTH) {
+                result.add(ObjectId.fromBytes(contents, off));
+            }
+        }
+        return result;
+    }
+
+    /** Replaces the table with one holding IDS. */
+    private void writeTable(TreeSet<ObjectId> ids) {
+        int[] fanout = new int[256];
+        for (ObjectId id : ids) {
+            fanout[id.firstByte()] += 1;
+        }
+        File tmp = new File(_table.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            int total = 0;
+            for (int i = 0; i < 256; i += 1) {
+                total += fanout[i];
+                out.writeInt(total);
+            }
+            for (ObjectId id : ids) {
+                out.write(id.toBytes());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (!tmp.renameTo(_table)) {
+            throw new IllegalArgumentException("could not write " + _table);
+        }
+        _mapped = null;
+    }
+
+    /** The sorted table. */
+    private final File _table;
+    /** The journal of recently added commits. */
+    private final File _journal;
+    /** The mapped table, or null if not yet mapped. */
+    private ByteBuffer _mapped;
+}
@@ -0,0 +1,60 @@
+package gitlet;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import ucb.junit.textui;
+
+public class IdIndexTest {
+
+    @Test
+    public void resolvesPrefixes() throws IOException {
+        File dir = Files.createTempDirectory("ids").toFile();
+        IdIndex index = new IdIndex(new File(dir, "table"),
+                                    new File(dir, "journal"), dir);
+        List<ObjectId> added = new ArrayList<ObjectId>();
+        for (int i = 0; i < 3 * IdIndex.JOURNAL_LIMIT; i += 1) {
+            ObjectId id = ObjectId.hash("commit " + i);
+            index.add(id);
+            added.add(id);
+        }
+        index = new IdIndex(new File(dir, "table"),
+                            new File(dir, "journal"), dir);
+        for (ObjectId id : added) {
+            String hex = id.toString();
+            List<ObjectId> found = index.resolve(hex.substring(0, 12));
+            assertEquals(1, found.size());
+            assertEquals(id, found.get(0));
+            assertTrue(index.resolve(hex.substring(0, 4)).contains(id));
+        }
+        assertEquals(0, index.resolve("abc").size());
+        assertEquals(0, index.resolve("not hex").size());
+    }
+
+    @Test
+    public void reportsEveryCandidate() throws IOException {
+        File dir = Files.createTempDirectory("ids").toFile();
+        IdIndex index = new IdIndex(new File(dir, "table"),
+                                    new File(dir, "journal"), dir);
+        ObjectId first = ObjectId.fromHex("abcd" + "0".repeat(36));
+        ObjectId second = ObjectId.fromHex("abcd" + "f".repeat(36));
+        index.add(first);
+        index.add(second);
+        List<ObjectId> found = index.resolve("ABCD");
+        assertEquals(2, found.size());
+        assertEquals(first, found.get(0));
+        assertEquals(second, found.get(1));
+    }
+
+    public static void main(String[] args) {
+        System.exit(textui.runClasses(IdIndexTest.class));
+    }
+
+}
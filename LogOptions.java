@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/** The options of the log and global-log commands: how many commits
+ *  to skip and to print, the range of dates to print, and whether
+ *  global-log prints newest first.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class LogOptions {
+    /** Options printing every commit. */
+    LogOptions() {
+    }
+
+    /** Returns the options in ARGS[FROM ..], which may be -n COUNT,
+     *  --skip COUNT, --since DATE and --until DATE, and, if SORTABLE,
+     *  --sorted.  A DATE is written yyyy-MM-dd or yyyy-MM-dd HH:mm:ss.
+     *  Throws IllegalArgumentException on anything else. */
+    static LogOptions parse(String[] args, int from, boolean sortable) {
+        LogOptions result = new LogOptions();
+        for (int i = from; i < args.length; i += 1) {
+            String option = args[i];
+            if (option.equals("--sorted") && sortable) {
+                result._sorted = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("missing value");
+            }
+            String value = args[i + 1];
+            i += 1;
+            if (option.equals("-n")) {
+                result._limit = count(value);
+            } else if (option.equals("--skip")) {
+                result._skip = count(value);
+            } else if (option.equals("--since")) {
+                result._since = date(value);
+            } else if (option.equals("--until")) {
+                result._until = date(value);
+            } else {
+                throw new IllegalArgumentException("unknown option");
+            }
+        }
+        return result;
+    }
+
+    /** Returns true iff a commit made at DATE is in the range of dates
+     *  to print. */
+    boolean inRange(Date date) {
+        return (_since == null || !date.before(_since))
+            && (_until == null || !date.after(_until));
+    }
+
+    /** Returns true iff the commit made at DATE, the next in the order
+     *  of the log, should be printed, counting it against the number
+     *  to skip or to print. */
+    boolean select(Date date) {
+        if (!inRange(date)) {
+            return false;
+        } else if (_skipped < _skip) {
+            _skipped += 1;
+            return false;
+        }
+        _printed += 1;
+        return true;
+    }
+
+    /** Returns true iff the most commits to print have been selected. */
+    boolean done() {
+        return _printed >= _limit;
+    }
+
+    /** Returns true iff global-log should print newest first. */
+    boolean sorted() {
+        return _sorted;
+    }
+
+    /** Returns the non-negative count VALUE. */
+    private static long count(String value) {
+        try {
+            long result = Long.parseLong(value);
+            if (result < 0) {
+                throw new IllegalArgumentException("negative count");
+            }
+            return result;
+        } catch (NumberFormatException excp) {
+            throw new IllegalArgumentException("bad count");
+        }
+    }
+
+    /** Returns the date VALUE. */
+    private static Date date(String value) {
+        String format = value.length() > 10 ? "yyyy-MM-dd HH:mm:ss"
+            : "yyyy-MM-dd";
+        try {
+            SimpleDateFormat parser = new SimpleDateFormat(format);
+            parser.setLenient(false);
+            return parser.parse(value);
+        } catch (ParseException excp) {
+            throw new IllegalArgumentException("bad date");
+        }
+    }
+
+    /** Number of commits in range to skip. */
+    private long _skip;
+    /** Most commits to print. */
+    private long _limit = Long.MAX_VALUE;
+    /** Earliest date to print, or null. */
+    private Date _since;
+    /** Latest date to print, or null. */
+    private Date _until;
+    /** True iff global-log prints newest first. */
+    private boolean _sorted;
+    /** Number of commits skipped so far. */
+    private long _skipped;
+    /** Number of commits selected so far. */
+    private long _printed;
+}
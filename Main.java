@@ -1,14 +1,12 @@
 package gitlet;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Ruihan Zhao and Emily Pedersen.
@@ -30,66 +28,132 @@ public class Main {
         commandNames.add("merge");
         commandNames.add("commit");
         commandNames.add("find");
+        commandNames.add("repack");
         return commandNames;
     }
 
-    /** Returns a deserialized gitlet object from
-    FILENAME. */
-    static Object readPointer(String fileName) {
-        Object temp;
-        File inFile = new File(fileName);
-        try {
-            ObjectInputStream in =
-                new ObjectInputStream(new FileInputStream(inFile));
-            temp = in.readObject();
-            in.close();
-        } catch (IOException excp) {
-            return null;
-        } catch (ClassNotFoundException e) {
-            return null;
+    /** Usage: java gitlet.Main ARGS, where ARGS contains
+     *  <COMMAND> <OPERAND> .... */
+    private static Gitlet gitlet;
+    /** This is our main method given ARGS, which may start with a
+     *  --trace flag.  The command daemon serves commands until it is
+     *  idle for long enough or is stopped. */
+    public static void main(String... args) throws IOException {
+        if (args.length > 0 && Trace.isFlag(args[0])) {
+            try {
+                Trace.start(args[0]);
+            } catch (IllegalArgumentException excp) {
+                System.out.println("Cannot write trace: "
+                                   + excp.getMessage());
+                return;
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+            String command = args.length > 0 ? args[0] : null;
+            Runtime.getRuntime().addShutdownHook(
+                new Thread(() -> Trace.finish(command)));
         }
-        return temp;
-    }
-    /** Returns a serialized gitlet OBJECT. */
-    static void writePointer(Object object) {
-        File serFile = new File(".gitlet/serFile");
         try {
-            ObjectOutputStream out =
-                new ObjectOutputStream(new FileOutputStream(serFile));
-            out.writeObject(object);
-            out.close();
-        } catch (IOException excp) {
+            if (args.length > 0 && args[0].equals("daemon")) {
+                daemon(args);
+            } else {
+                run(args, null, null);
+            }
+        } catch (GitletExit excp) {
             return;
         }
     }
-
-    /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
-    private static Gitlet gitlet;
-    /** This is our main method given ARGS. */
-    public static void main(String... args) throws IOException {
+    /** Runs the command ARGS on the repository in the current
+     *  directory, whose state is LOADED, or is read if LOADED is null,
+     *  and stores its state.  The working files are tracked by WATCHER,
+     *  unless it is null.  Returns the gitlet holding the state after
+     *  the command, or null if there is no repository.  Throws
+     *  GitletExit, with the state not stored, if the command ends
+     *  early. */
+    static Gitlet run(String[] args, Gitlet loaded, Watcher watcher)
+        throws IOException {
         HashSet<String> commands = getCommandNames();
         if (args.length == 0) {
             System.out.println("Please enter a command");
+            return loaded;
         } else if (args[0].equals("init")) {
             if (args.length > 1) {
                 incorrectOperands();
             }
-            gitlet = new Gitlet();
-            gitlet.init();
-            writePointer(gitlet);
-            return;
+            Trace.Span span = Trace.span("command");
+            try {
+                gitlet = new Gitlet();
+                gitlet.init();
+            } finally {
+                span.close();
+            }
+            return gitlet;
         } else if (!Files.exists(Paths.get(".gitlet"))) {
+            System.out.println("Not in an initialized gitlet directory.");
+            return null;
+        }
+        Trace.Span span = Trace.span("load");
+        try {
+            gitlet = loaded != null ? loaded
+                : Gitlet.readPointer(new File(".gitlet"));
+            if (watcher != null) {
+                watcher.begin();
+                gitlet.watch(watcher);
+            }
+        } finally {
+            span.close();
+        }
+        span = Trace.span("command");
+        try {
+            runCommand(args);
+        } finally {
+            span.close();
+        }
+        if (!commands.contains(args[0])) {
+            System.out.println("No command with that name exists.");
+            return gitlet;
+        }
+        span = Trace.span("store");
+        try {
+            gitlet.writePointer();
+        } finally {
+            span.close();
+        }
+        return gitlet;
+    }
+    /** Serves commands from the repository in the current directory
+     *  as the command daemon ARGS asks: daemon serves them, and daemon
+     *  stop, which reaches here only if no daemon is running, says
+     *  so. */
+    static void daemon(String[] args) throws IOException {
+        if (args.length == 2 && args[1].equals("stop")) {
+            System.out.println("No daemon is running.");
+            return;
+        } else if (args.length > 1) {
+            incorrectOperands();
+        }
+        File dir = new File(".gitlet");
+        if (!dir.isDirectory()) {
             System.out.println("Not in an initialized gitlet directory.");
             return;
         }
-        gitlet = (Gitlet) readPointer(".gitlet/serFile");
+        Config config = new Config(new File(dir, "config"));
+        int idle = config.getInt(Config.DAEMON_IDLE, Daemon.IDLE);
+        boolean watch = config.getBoolean(Config.DAEMON_WATCH, true);
+        new Daemon(dir, TimeUnit.SECONDS.toMillis(idle), watch).serve();
+    }
+    /** Runs the command ARGS on the gitlet read. */
+    static void runCommand(String[] args) throws IOException {
         if (args[0].equals("add")) {
-            if (args.length > 2) {
+            if (args.length < 2) {
                 incorrectOperands();
+            } else if (args[1].equals("-A")) {
+                if (args.length > 2) {
+                    incorrectOperands();
+                }
+                gitlet.addAll();
+            } else {
+                gitlet.add(Arrays.asList(args).subList(1, args.length));
             }
-            gitlet.add(args[1]);
-            writePointer(gitlet);
         } else if (args[0].equals("commit")) {
             if (args.length > 2) {
                 incorrectOperands();
@@ -105,35 +169,38 @@ public class Main {
             }
             gitlet.remove(args[1]);
         } else if (args[0].equals("log")) {
-            if (args.length > 1) {
-                incorrectOperands();
-            }
-            gitlet.log();
+            gitlet.log(logOptions(args, false));
         } else if (args[0].equals("global-log")) {
-            if (args.length > 1) {
-                incorrectOperands();
-            }
-            gitlet.globalLog();
+            gitlet.globalLog(logOptions(args, true));
         }
         mainHelper(args);
-        if (!commands.contains(args[0])) {
-            System.out.println("No command with that name exists.");
-            return;
+    }
+    /** Returns the options of the log or global-log command ARGS,
+     *  accepting --sorted iff SORTABLE. */
+    static LogOptions logOptions(String[] args, boolean sortable) {
+        try {
+            return LogOptions.parse(args, 1, sortable);
+        } catch (IllegalArgumentException excp) {
+            incorrectOperands();
+            return null;
         }
-        gitlet.writePointer(gitlet);
     }
-    /** Returns incorrect operands. */
+    /** Returns incorrect operands, ending the command by throwing
+     *  GitletExit. */
     static void incorrectOperands() {
         System.out.println("Incorrect operands.");
-        System.exit(0);
+        throw new GitletExit();
     }
     /** Helps shorten the main method using ARGS. */
     static void mainHelper(String[] args) throws IOException {
         if (args[0].equals("find")) {
-            if (args.length > 2) {
+            if (args.length == 3) {
+                gitlet.find(args[1], args[2]);
+            } else if (args.length == 2) {
+                gitlet.find(args[1]);
+            } else {
                 incorrectOperands();
             }
-            gitlet.find(args[1]);
         } else if (args[0].equals("status")) {
             if (args.length > 1) {
                 incorrectOperands();
@@ -161,6 +228,11 @@ public class Main {
                 incorrectOperands();
             }
             gitlet.merge(args[1]);
+        } else if (args[0].equals("repack")) {
+            if (args.length > 1) {
+                incorrectOperands();
+            }
+            gitlet.repack();
         }
     }
     /** Does checkout so main has less lines using ARGS. */
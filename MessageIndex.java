@@ -0,0 +1,182 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/** A persistent index of commit messages, maintained as commits are
+ *  made.  It has two parts, each a set of bucket files holding the
+ *  20-byte SHA1s of the commits filed in them, in the order they were
+ *  made: an exact-match index, where a commit is filed under the hash
+ *  of its whole message, and an inverted index of trigrams, where it
+ *  is filed under the hash of every three-character substring of its
+ *  message.  A lookup yields candidates, a superset of the commits
+ *  asked for, whose messages the caller checks.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class MessageIndex {
+    /** Number of buckets in each part of the index. */
+    static final int BUCKETS = 4096;
+    /** Length of the substrings filed in the trigram index. */
+    static final int GRAM = 3;
+    /** Characters with a special meaning in a regular expression. */
+    private static final String META = ".[]{}()*+?^$|\\";
+
+    /** An index kept in the directory DIR. */
+    MessageIndex(File dir) {
+        _exact = new File(dir, "exact");
+        _grams = new File(dir, "grams");
+    }
+
+    /** Returns true iff this index has been created. */
+    boolean exists() {
+        return _exact.isDirectory();
+    }
+
+    /** Files the commit named ID, whose message is MESSAGE. */
+    void add(ObjectId id, String message) {
+        _exact.mkdirs();
+        _grams.mkdirs();
+        append(bucket(_exact, message), id);
+        TreeSet<Integer> buckets = new TreeSet<Integer>();
+        for (int i = 0; i + GRAM <= message.length(); i += 1) {
+            buckets.add(hash(message.substring(i, i + GRAM)));
+        }
+        for (int b : buckets) {
+            append(bucket(_grams, b), id);
+        }
+    }
+
+    /** Returns the candidates for commits whose message is MESSAGE. */
+    LinkedHashSet<ObjectId> exact(String message) {
+        return read(bucket(_exact, message));
+    }
+
+    /** Returns the candidates for commits whose message contains all
+     *  of LITERALS, or null if LITERALS has no trigrams, so that every
+     *  commit is a candidate. */
+    LinkedHashSet<ObjectId> containing(List<String> literals) {
+        LinkedHashSet<ObjectId> result = null;
+        for (String literal : literals) {
+            for (int i = 0; i + GRAM <= literal.length(); i += 1) {
+                String gram = literal.substring(i, i + GRAM);
+                LinkedHashSet<ObjectId> posting =
+                    read(bucket(_grams, hash(gram)));
+                if (result == null) {
+                    result = posting;
+                } else {
+                    result.retainAll(posting);
+                }
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the literal strings that every match of the regular
+     *  expression REGEX must contain.  Only simple expressions are
+     *  analyzed: literals are never taken from inside parentheses or
+     *  character classes, and an expression with alternation, flags or
+     *  escapes other than \d, \w, \s, \b and their negations
+     *  yields none. */
+    static List<String> literals(String regex) {
+        List<String> result = new ArrayList<String>();
+        if (regex.indexOf('|') >= 0 || regex.contains("(?")) {
+            return result;
+        }
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < regex.length(); i += 1) {
+            char c = regex.charAt(i);
+            boolean literal = META.indexOf(c) < 0;
+            if (c == '\\' && i + 1 < regex.length()) {
+                i += 1;
+                c = regex.charAt(i);
+                if (!Character.isLetterOrDigit(c)) {
+                    literal = true;
+                } else if ("dDwWsSbB".indexOf(c) < 0) {
+                    return new ArrayList<String>();
+                }
+            } else if (c == '[' || c == '{') {
+                int end = regex.indexOf(c == '[' ? ']' : '}', i + 2);
+                if (end < 0 || regex.substring(i, end).contains("\\")) {
+                    return new ArrayList<String>();
+                }
+                if (c == '{' && run.length() > 0) {
+                    run.setLength(run.length() - 1);
+                }
+                i = end;
+            } else if (c == '(') {
+                depth += 1;
+            } else if (c == ')') {
+                depth -= 1;
+            } else if ((c == '*' || c == '?') && run.length() > 0) {
+                run.setLength(run.length() - 1);
+            }
+            if (literal && depth == 0) {
+                run.append(c);
+            } else {
+                flush(run, result);
+            }
+        }
+        flush(run, result);
+        return result;
+    }
+
+    /** Adds RUN to RESULT if it is long enough to have a trigram, and
+     *  empties RUN. */
+    private static void flush(StringBuilder run, List<String> result) {
+        if (run.length() >= GRAM) {
+            result.add(run.toString());
+        }
+        run.setLength(0);
+    }
+
+    /** Returns the bucket number of the string S. */
+    private static int hash(String s) {
+        return (s.hashCode() & 0x7fffffff) % BUCKETS;
+    }
+
+    /** Returns the file of the bucket of DIR holding MESSAGE. */
+    private static File bucket(File dir, String message) {
+        return bucket(dir, hash(message));
+    }
+
+    /** Returns the file of bucket B of DIR. */
+    private static File bucket(File dir, int b) {
+        return new File(dir, Integer.toHexString(b));
+    }
+
+    /** Appends ID to the bucket FILE. */
+    private static void append(File file, ObjectId id) {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(id.toBytes());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the SHA1s in the bucket FILE, in the order they were
+     *  filed. */
+    private static LinkedHashSet<ObjectId> read(File file) {
+        LinkedHashSet<ObjectId> result = new LinkedHashSet<ObjectId>();
+        if (file.isFile()) {
+            byte[] contents = Utils.readContents(file);
+            for (int off = 0; off + ObjectId.LENGTH <= contents.length;
+                 off += ObjectId.LENGTH) {
+                result.add(ObjectId.fromBytes(contents, off));
+            }
+        }
+        return result;
+    }
+
+    /** Directory of the exact-match buckets. */
+    private final File _exact;
+    /** Directory of the trigram buckets. */
+    private final File _grams;
+}
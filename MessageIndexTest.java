@@ -0,0 +1,53 @@
+package gitlet;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ucb.junit.textui;
+
+public class MessageIndexTest {
+
+    @Test
+    public void findsCandidates() throws IOException {
+        File dir = Files.createTempDirectory("messages").toFile();
+        MessageIndex index = new MessageIndex(dir);
+        ObjectId fix = ObjectId.hash("1");
+        ObjectId feature = ObjectId.hash("2");
+        index.add(fix, "Fix parser crash");
+        index.add(feature, "Add parser feature");
+        assertTrue(index.exact("Fix parser crash").contains(fix));
+        Set<ObjectId> found = index.containing(Arrays.asList("parser"));
+        assertTrue(found.contains(fix));
+        assertTrue(found.contains(feature));
+        found = index.containing(Arrays.asList("crash"));
+        assertTrue(found.contains(fix));
+        assertNull(index.containing(Arrays.asList()));
+    }
+
+    @Test
+    public void extractsLiterals() {
+        assertEquals(Arrays.asList("parser", "crash"),
+                     MessageIndex.literals("parser.*crash"));
+        assertEquals(Arrays.asList("Fix ", " parser"),
+                     MessageIndex.literals("^Fix \\w+ parsers?"));
+        assertEquals(Arrays.asList("abc"),
+                     MessageIndex.literals("abcd{2}[xyz]+"));
+        List<String> none = MessageIndex.literals("fix|add");
+        assertEquals(0, none.size());
+        assertEquals(0, MessageIndex.literals("(?i)fix").size());
+        assertEquals(0, MessageIndex.literals("(abc)?").size());
+    }
+
+    public static void main(String[] args) {
+        System.exit(textui.runClasses(MessageIndexTest.class));
+    }
+
+}
@@ -0,0 +1,253 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** A SHA1 naming a blob or commit, held as five ints rather than as
+ *  a 40-character string.  ObjectIds are immutable and compare in the
+ *  same order as their hexadecimal forms.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+final class ObjectId implements Comparable<ObjectId>, Serializable {
+    /** Version of the serialized form. */
+    private static final long serialVersionUID = 1L;
+    /** Length of an ObjectId in bytes. */
+    static final int LENGTH = 20;
+    /** Length of an ObjectId in hexadecimal digits. */
+    static final int HEX_LENGTH = 2 * LENGTH;
+
+    /** The ObjectId whose bytes are W1 .. W5, most significant first. */
+    private ObjectId(int w1, int w2, int w3, int w4, int w5) {
+        _w1 = w1;
+        _w2 = w2;
+        _w3 = w3;
+        _w4 = w4;
+        _w5 = w5;
+    }
+
+    /** Returns the ObjectId held in the LENGTH bytes of B starting at
+     *  OFF. */
+    static ObjectId fromBytes(byte[] b, int off) {
+        return fromBuffer(ByteBuffer.wrap(b), off);
+    }
+
+    /** Returns the ObjectId held in the LENGTH bytes of BUFFER
+     *  starting at absolute position POS. */
+    static ObjectId fromBuffer(ByteBuffer buffer, int pos) {
+        return new ObjectId(buffer.getInt(pos), buffer.getInt(pos + 4),
+                            buffer.getInt(pos + 8), buffer.getInt(pos + 12),
+                            buffer.getInt(pos + 16));
+    }
+
+    /** Returns the ObjectId written in hexadecimal as HEX. Throws
+     *  IllegalArgumentException if HEX is not a SHA1. */
+    static ObjectId fromHex(String hex) {
+        if (!isId(hex)) {
+            throw new IllegalArgumentException("not a SHA1: " + hex);
+        }
+        return new ObjectId(word(hex, 0), word(hex, 8), word(hex, 16),
+                            word(hex, 24), word(hex, 32));
+    }
+
+    /** Returns true iff S is a SHA1 written in hexadecimal. */
+    static boolean isId(String s) {
+        if (s.length() != HEX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HEX_LENGTH; i += 1) {
+            if (Character.digit(s.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the SHA1 of the concatenation of VALS, which may be any
+     *  mixture of byte arrays, Strings and ObjectIds. */
+    static ObjectId hash(Object... vals) {
+        MessageDigest md = digest();
+        for (Object val : vals) {
+            if (val instanceof byte[]) {
+                md.update((byte[]) val);
+            } else if (val instanceof String) {
+                md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+            } else if (val instanceof ObjectId) {
+                md.update(((ObjectId) val).toBytes());
+            } else {
+                throw new IllegalArgumentException("improper type to hash");
+            }
+        }
+        return fromBytes(md.digest(), 0);
+    }
+
+    /** Returns the SHA1 of the contents of FILE, which is read
+     *  Utils.BUFFER_SIZE bytes at a time.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static ObjectId hash(File file) {
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            return hash(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the SHA1 of the rest of the contents of IN, which is
+     *  read Utils.BUFFER_SIZE bytes at a time. */
+    static ObjectId hash(ReadableByteChannel in) throws IOException {
+        MessageDigest md = digest();
+        ByteBuffer buffer = ByteBuffer.allocate(Utils.BUFFER_SIZE);
+        while (in.read(buffer) >= 0) {
+            buffer.flip();
+            md.update(buffer);
+            buffer.clear();
+        }
+        return fromBytes(md.digest(), 0);
+    }
+
+    /** Returns this thread's SHA-1 digest, reset for reuse. */
+    private static MessageDigest digest() {
+        MessageDigest md = DIGEST.get();
+        md.reset();
+        return md;
+    }
+
+    /** Returns the LENGTH bytes of this ObjectId. */
+    byte[] toBytes() {
+        byte[] result = new byte[LENGTH];
+        copyTo(result, 0);
+        return result;
+    }
+
+    /** Stores the bytes of this ObjectId in B, starting at OFF. */
+    void copyTo(byte[] b, int off) {
+        ByteBuffer.wrap(b, off, LENGTH).putInt(_w1).putInt(_w2)
+            .putInt(_w3).putInt(_w4).putInt(_w5);
+    }
+
+    /** Returns the first byte of this ObjectId, as a value in 0 .. 255. */
+    int firstByte() {
+        return _w1 >>> 24;
+    }
+
+    /** Returns true iff the hexadecimal form of this ObjectId begins
+     *  with PREFIX. */
+    boolean startsWith(String prefix) {
+        return prefix.length() <= HEX_LENGTH
+            && toString().startsWith(prefix.toLowerCase());
+    }
+
+    /** Returns the unsigned comparison of this ObjectId with the
+     *  LENGTH bytes of BUFFER at absolute position POS. */
+    int compareTo(ByteBuffer buffer, int pos) {
+        int cmp = Integer.compareUnsigned(_w1, buffer.getInt(pos));
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(_w2, buffer.getInt(pos + 4));
+        }
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(_w3, buffer.getInt(pos + 8));
+        }
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(_w4, buffer.getInt(pos + 12));
+        }
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(_w5, buffer.getInt(pos + 16));
+        }
+        return cmp;
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        int cmp = Integer.compareUnsigned(_w1, other._w1);
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(_w2, other._w2);
+        }
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(_w3, other._w3);
+        }
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(_w4, other._w4);
+        }
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(_w5, other._w5);
+        }
+        return cmp;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return _w1 == other._w1 && _w2 == other._w2 && _w3 == other._w3
+            && _w4 == other._w4 && _w5 == other._w5;
+    }
+
+    /** Returns the second word of this ObjectId, which, being part of
+     *  a SHA1, is already uniformly distributed. */
+    @Override
+    public int hashCode() {
+        return _w2;
+    }
+
+    /** Returns this ObjectId as 40 hexadecimal digits. */
+    @Override
+    public String toString() {
+        char[] result = new char[HEX_LENGTH];
+        hex(_w1, result, 0);
+        hex(_w2, result, 8);
+        hex(_w3, result, 16);
+        hex(_w4, result, 24);
+        hex(_w5, result, 32);
+        return new String(result);
+    }
+
+    /** Writes W as eight hexadecimal digits into RESULT at OFF. */
+    private static void hex(int w, char[] result, int off) {
+        for (int i = 7; i >= 0; i -= 1) {
+            result[off + i] = HEX[w & 0xf];
+            w >>>= 4;
+        }
+    }
+
+    /** Returns the int written as eight hexadecimal digits in HEX
+     *  starting at OFF. */
+    private static int word(String hex, int off) {
+        int result = 0;
+        for (int i = 0; i < 8; i += 1) {
+            result = result << 4 | Character.digit(hex.charAt(off + i), 16);
+        }
+        return result;
+    }
+
+    /** Hexadecimal digits. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Each thread's SHA-1 digest, reused from hash to hash. */
+    private static final ThreadLocal<MessageDigest> DIGEST =
+        ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException excp) {
+                throw new IllegalArgumentException(
+                    "System does not support SHA-1");
+            }
+        });
+
+    /** Bytes 0 .. 3 of this ObjectId. */
+    private final int _w1;
+    /** Bytes 4 .. 7 of this ObjectId. */
+    private final int _w2;
+    /** Bytes 8 .. 11 of this ObjectId. */
+    private final int _w3;
+    /** Bytes 12 .. 15 of this ObjectId. */
+    private final int _w4;
+    /** Bytes 16 .. 19 of this ObjectId. */
+    private final int _w5;
+}
@@ -0,0 +1,45 @@
+package gitlet;
+
+import static org.junit.Assert.*;
+
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import ucb.junit.textui;
+
+public class ObjectIdTest {
+
+    @Test
+    public void hexRoundTrip() {
+        String hex = Utils.sha1("hello");
+        ObjectId id = ObjectId.fromHex(hex);
+        assertEquals(hex, id.toString());
+        assertEquals(id, ObjectId.hash("hello"));
+        assertEquals(id, ObjectId.fromBytes(id.toBytes(), 0));
+        assertEquals(id.hashCode(), ObjectId.fromHex(hex).hashCode());
+        assertTrue(id.startsWith(hex.substring(0, 6)));
+        assertFalse(ObjectId.isId("not a sha"));
+    }
+
+    @Test
+    public void ordersLikeHex() {
+        TreeSet<String> hexes = new TreeSet<String>();
+        TreeSet<ObjectId> ids = new TreeSet<ObjectId>();
+        for (int i = 0; i < 500; i += 1) {
+            hexes.add(Utils.sha1("blob " + i));
+            ids.add(ObjectId.hash("blob " + i));
+        }
+        String[] expected = hexes.toArray(new String[0]);
+        int k = 0;
+        for (ObjectId id : ids) {
+            assertEquals(expected[k], id.toString());
+            k += 1;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(textui.runClasses(ObjectIdTest.class));
+    }
+
+}
@@ -0,0 +1,263 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/** A read-only pack of blobs: a .pack file holding the blobs'
+ *  contents back to back, and a .idx file holding their SHA1s in
+ *  sorted order behind a 256-entry fan-out table, so that a blob
+ *  is found with a binary search over the SHA1s sharing its first
+ *  byte.
+ *
+ *  The .idx file is laid out as the magic number IDX_MAGIC, the
+ *  fan-out table (entry I is the number of SHA1s whose first byte
+ *  is at most I), the 20-byte SHA1s, then the 8-byte offset and
+ *  8-byte length of each blob in the .pack file.  The .pack file
+ *  is the magic number PACK_MAGIC, the number of blobs, and the
+ *  blobs' contents.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class PackFile {
+    /** First four bytes of a .pack file. */
+    static final int PACK_MAGIC = 0x47504b31;
+    /** First four bytes of a .idx file. */
+    static final int IDX_MAGIC = 0x47494431;
+    /** Most bytes of the .pack file mapped at once by a reader. */
+    private static final long WINDOW = 1 << 24;
+    /** Size of the .pack header in bytes. */
+    private static final int PACK_HEADER = 8;
+    /** Size of the .idx header and fan-out table in bytes. */
+    private static final int IDX_HEADER = 4 + 256 * 4;
+
+    /** Opens the pack whose .pack file is PACK and whose .idx file
+     *  is IDX. */
+    PackFile(File pack, File idx) throws IOException {
+        _pack = pack;
+        _idx = idx;
+        try (RandomAccessFile in = new RandomAccessFile(idx, "r")) {
+            _index = in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                                         0, in.length());
+        }
+        if (_index.getInt(0) != IDX_MAGIC) {
+            throw new IOException("bad pack index " + idx);
+        }
+        _count = _index.getInt(IDX_HEADER - 4);
+        _data = new RandomAccessFile(pack, "r").getChannel();
+    }
+
+    /** Returns the number of blobs in this pack. */
+    int size() {
+        return _count;
+    }
+
+    /** Returns the .pack file of this pack. */
+    File packFile() {
+        return _pack;
+    }
+
+    /** Returns the .idx file of this pack. */
+    File idxFile() {
+        return _idx;
+    }
+
+    /** Returns the SHA1 of the Kth blob in sorted order. */
+    ObjectId sha(int k) {
+        return ObjectId.fromBuffer(_index, IDX_HEADER + k * ObjectId.LENGTH);
+    }
+
+    /** Returns the position of the blob named SHA in sorted order,
+     *  or -1 if this pack does not hold it. */
+    int find(ObjectId sha) {
+        int first = sha.firstByte();
+        int lo = first == 0 ? 0 : _index.getInt(4 + (first - 1) * 4);
+        int hi = _index.getInt(4 + first * 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = sha.compareTo(_index, IDX_HEADER + mid * ObjectId.LENGTH);
+            if (cmp > 0) {
+                lo = mid + 1;
+            } else if (cmp < 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns a stream of the contents of the Kth blob in sorted
+     *  order. */
+    InputStream open(int k) {
+        int offsets = IDX_HEADER + _count * ObjectId.LENGTH;
+        long offset = _index.getLong(offsets + k * 8);
+        long length = _index.getLong(offsets + _count * 8 + k * 8);
+        return new Region(offset, length);
+    }
+
+    /** Returns the length of the Kth blob in sorted order. */
+    long length(int k) {
+        int offsets = IDX_HEADER + _count * ObjectId.LENGTH;
+        return _index.getLong(offsets + _count * 8 + k * 8);
+    }
+
+    /** Returns the contents of the Kth blob in sorted order mapped into
+     *  memory.  Throws IOException if it is too large to map. */
+    ByteBuffer map(int k) throws IOException {
+        int offsets = IDX_HEADER + _count * ObjectId.LENGTH;
+        long offset = _index.getLong(offsets + k * 8);
+        long length = length(k);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("blob too large to map");
+        }
+        return _data.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    /** Transfers the contents of the Kth blob in sorted order to OUT
+     *  straight from the .pack file. */
+    void transferTo(int k, WritableByteChannel out) throws IOException {
+        int offsets = IDX_HEADER + _count * ObjectId.LENGTH;
+        long offset = _index.getLong(offsets + k * 8);
+        long length = _index.getLong(offsets + _count * 8 + k * 8);
+        Utils.transfer(_data, offset, length, out);
+    }
+
+    /** A stream over part of the .pack file, which is mapped into
+     *  memory at most WINDOW bytes at a time. */
+    private class Region extends InputStream {
+        /** A stream over the LENGTH bytes at OFFSET. */
+        Region(long offset, long length) {
+            _next = offset;
+            _remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return _window.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, _window.remaining());
+            _window.get(b, off, n);
+            return n;
+        }
+
+        /** Maps the next window if the current one is used up. Returns
+         *  false at the end of the region. */
+        private boolean fill() throws IOException {
+            if (_window != null && _window.hasRemaining()) {
+                return true;
+            }
+            if (_remaining == 0) {
+                return false;
+            }
+            long size = Math.min(WINDOW, _remaining);
+            _window = _data.map(FileChannel.MapMode.READ_ONLY, _next, size);
+            _next += size;
+            _remaining -= size;
+            return true;
+        }
+
+        /** Position in the .pack file of the next window. */
+        private long _next;
+        /** Bytes of the region not yet mapped. */
+        private long _remaining;
+        /** The mapped window being read, or null. */
+        private MappedByteBuffer _window;
+    }
+
+    /** Releases the .pack file. */
+    void close() throws IOException {
+        _data.close();
+    }
+
+    /** Source of the contents of the blobs written to a pack. */
+    interface Source {
+        /** Returns a stream of the contents of the blob named SHA. */
+        InputStream open(ObjectId sha) throws IOException;
+    }
+
+    /** Writes the blobs named by SHAS, which must be sorted and
+     *  distinct, to PACK and IDX, reading their contents from
+     *  SOURCE. Both files are written under temporary names and
+     *  renamed into place, IDX last, so a pack is only visible once
+     *  it is complete. */
+    static void write(File pack, File idx, List<ObjectId> shas,
+                      Source source) throws IOException {
+        int count = shas.size();
+        long[] offsets = new long[count];
+        long[] lengths = new long[count];
+        File packTmp = new File(pack.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(packTmp)))) {
+            out.writeInt(PACK_MAGIC);
+            out.writeInt(count);
+            long offset = PACK_HEADER;
+            for (int k = 0; k < count; k += 1) {
+                try (InputStream in = source.open(shas.get(k))) {
+                    offsets[k] = offset;
+                    lengths[k] = Utils.copy(in, out);
+                    offset += lengths[k];
+                }
+            }
+        }
+        if (!packTmp.renameTo(pack)) {
+            throw new IOException("could not write " + pack);
+        }
+        int[] fanout = new int[256];
+        for (ObjectId sha : shas) {
+            fanout[sha.firstByte()] += 1;
+        }
+        File tmp = new File(idx.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(IDX_MAGIC);
+            int total = 0;
+            for (int i = 0; i < 256; i += 1) {
+                total += fanout[i];
+                out.writeInt(total);
+            }
+            for (ObjectId sha : shas) {
+                out.write(sha.toBytes());
+            }
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+            for (long length : lengths) {
+                out.writeLong(length);
+            }
+        }
+        if (!tmp.renameTo(idx)) {
+            throw new IOException("could not write " + idx);
+        }
+    }
+
+    /** The .pack file. */
+    private final File _pack;
+    /** The .idx file. */
+    private final File _idx;
+    /** The mapped contents of the .idx file. */
+    private final ByteBuffer _index;
+    /** Number of blobs in this pack. */
+    private final int _count;
+    /** The open .pack file. */
+    private final FileChannel _data;
+}
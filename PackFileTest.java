@@ -0,0 +1,104 @@
+package gitlet;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import ucb.junit.textui;
+
+public class PackFileTest {
+
+    @Test
+    public void packRoundTrip() throws IOException {
+        File dir = Files.createTempDirectory("pack").toFile();
+        TreeMap<ObjectId, byte[]> blobs = new TreeMap<ObjectId, byte[]>();
+        for (int i = 0; i < 300; i += 1) {
+            byte[] contents = ("blob number " + i).getBytes();
+            blobs.put(ObjectId.hash(contents), contents);
+        }
+        List<ObjectId> shas = new ArrayList<ObjectId>(blobs.keySet());
+        File pack = new File(dir, "test.pack");
+        File idx = new File(dir, "test.idx");
+        PackFile.write(pack, idx, shas,
+                       sha -> new ByteArrayInputStream(blobs.get(sha)));
+        PackFile packFile = new PackFile(pack, idx);
+        assertEquals(300, packFile.size());
+        for (int k = 0; k < shas.size(); k += 1) {
+            assertEquals(shas.get(k), packFile.sha(k));
+            assertEquals(k, packFile.find(shas.get(k)));
+            assertArrayEquals(blobs.get(shas.get(k)),
+                              packFile.open(k).readAllBytes());
+        }
+        assertEquals(-1, packFile.find(ObjectId.hash("not packed")));
+        packFile.close();
+    }
+
+    @Test
+    public void repackMovesLooseBlobs() throws IOException {
+        File dir = Files.createTempDirectory("store").toFile();
+        new File(dir, BlobStore.LOOSE_DIR).mkdir();
+        BlobStore store = new BlobStore(dir);
+        byte[] first = "first".getBytes();
+        byte[] second = "second".getBytes();
+        write(store, first);
+        write(store, second);
+        assertEquals(2, store.repack());
+        assertEquals(0, new File(dir, BlobStore.LOOSE_DIR).list().length);
+        assertArrayEquals(first, read(store, first));
+        byte[] third = "third".getBytes();
+        write(store, third);
+        assertEquals(3, store.repack());
+        assertEquals(2, new File(dir, BlobStore.PACK_DIR).list().length);
+        assertArrayEquals(second, read(store, second));
+        assertArrayEquals(third, read(store, third));
+    }
+
+    @Test
+    public void checksOutEachWay() throws IOException {
+        File dir = Files.createTempDirectory("store").toFile();
+        new File(dir, BlobStore.LOOSE_DIR).mkdir();
+        byte[] loose = "loose".getBytes();
+        byte[] packed = "packed".getBytes();
+        write(new BlobStore(dir), packed);
+        new BlobStore(dir).repack();
+        write(new BlobStore(dir), loose);
+        for (BlobStore.Mode mode : BlobStore.Mode.values()) {
+            BlobStore store = new BlobStore(dir, mode);
+            for (byte[] contents : new byte[][] { loose, packed }) {
+                File work = new File(dir, mode + "-" + contents.length);
+                Utils.writeContents(work, "old".getBytes());
+                store.checkout(ObjectId.hash(contents), work);
+                assertArrayEquals(contents, Utils.readContents(work));
+            }
+        }
+        assertArrayEquals(loose, read(new BlobStore(dir), loose));
+    }
+
+    /** Writes CONTENTS to STORE as a loose blob. */
+    private static void write(BlobStore store, byte[] contents)
+        throws IOException {
+        File file = File.createTempFile("blob", null);
+        Utils.writeContents(file, contents);
+        store.moveIn(ObjectId.hash(contents), file);
+        assertFalse(file.exists());
+    }
+
+    /** Returns the blob of STORE named by the SHA1 of CONTENTS. */
+    private static byte[] read(BlobStore store, byte[] contents)
+        throws IOException {
+        return store.open(ObjectId.hash(contents)).readAllBytes();
+    }
+
+    public static void main(String[] args) {
+        System.exit(textui.runClasses(PackFileTest.class));
+    }
+
+}
@@ -0,0 +1,222 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/** Builds a synthetic repository of a given shape in the current
+ *  directory, for benchmarks.  The repository has FILES files of about
+ *  FILESIZE bytes of text, spread over directories of DIR_FILES files,
+ *  committed at first on master.  BRANCHES branches then start there,
+ *  and COMMITS more commits are made in turn on master and each branch,
+ *  each changing CHURN of the files of its branch by rewriting one of
+ *  their lines.  Each branch changes only its own files, so that any
+ *  two branches merge without conflicts.
+ *
+ *  Everything is drawn from a Random seeded by SEED, so the same shape
+ *  and seed always give the same files and history, though not the same
+ *  SHA1s of commits, which hold their dates.  Since Gitlet works in the
+ *  current directory, that directory is cleared first, which is refused
+ *  unless it is empty or holds a repository generated before.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class RepoGenerator {
+    /** Files in each directory. */
+    static final int DIR_FILES = 64;
+    /** Length of each line of a file, including its newline. */
+    static final int LINE = 64;
+    /** File in the working directory marking it as generated. */
+    static final String MARKER = ".generated";
+
+    /** A generator of repositories with COMMITS commits after the first
+     *  on master, FILES files of about FILESIZE bytes, BRANCHES branches
+     *  besides master, and CHURN, between 0 and 1, of the files of a
+     *  branch changed in each commit, all drawn from SEED. */
+    RepoGenerator(int commits, int files, int fileSize, int branches,
+                  double churn, long seed) {
+        if (commits < 0 || files <= branches || fileSize < 0
+            || branches < 0 || churn < 0 || churn > 1) {
+            throw new IllegalArgumentException("bad repository shape");
+        }
+        _commits = commits;
+        _files = files;
+        _fileSize = fileSize;
+        _branches = branches;
+        _churn = churn;
+        _seed = seed;
+    }
+
+    /** Returns the path of file K of the repository. */
+    static String file(int k) {
+        return String.format("d%03d/f%05d.txt", k / DIR_FILES, k);
+    }
+
+    /** Returns the name of branch B, where branch 0 is master. */
+    static String branch(int b) {
+        return b == 0 ? "master" : "b" + b;
+    }
+
+    /** Returns the number of files. */
+    int files() {
+        return _files;
+    }
+
+    /** Returns the number of branches besides master. */
+    int branches() {
+        return _branches;
+    }
+
+    /** Builds the repository in the current directory, leaving master
+     *  checked out and its state written, and returns it.  Throws
+     *  IllegalArgumentException if the directory holds anything but a
+     *  repository generated before. */
+    Gitlet generate() {
+        clear();
+        Utils.writeContents(new File(MARKER), "");
+        Random random = new Random(_seed);
+        Gitlet gitlet = new Gitlet();
+        gitlet.init();
+        for (int k = 0; k < _files; k += 1) {
+            write(k, text(random));
+            gitlet.add(file(k));
+        }
+        gitlet.commit("initial import");
+        for (int b = 1; b <= _branches; b += 1) {
+            gitlet.branch(branch(b));
+        }
+        int owned = _files / (_branches + 1);
+        int changed = Math.max(1, (int) Math.round(owned * _churn));
+        int current = 0;
+        for (int c = 0; c < _commits; c += 1) {
+            int b = c % (_branches + 1);
+            if (b != current) {
+                gitlet.checkout(branch(b), 0);
+                current = b;
+            }
+            for (int i = 0; i < changed; i += 1) {
+                int k = b + random.nextInt(owned) * (_branches + 1);
+                edit(k, random);
+                gitlet.add(file(k));
+            }
+            gitlet.commit("commit " + c + " on " + branch(b));
+        }
+        if (current != 0) {
+            gitlet.checkout(branch(0), 0);
+        }
+        gitlet.writePointer();
+        return gitlet;
+    }
+
+    /** Removes a repository generated before from the current
+     *  directory, or throws IllegalArgumentException if the directory
+     *  holds anything else. */
+    private static void clear() {
+        File dir = new File(".");
+        String[] names = dir.list();
+        if (names == null || names.length == 0) {
+            return;
+        }
+        if (!new File(MARKER).isFile()) {
+            throw new IllegalArgumentException(
+                "will not generate a repository in a directory in use");
+        }
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder())
+                .filter(p -> !p.normalize().toString().isEmpty())
+                .forEach(p -> p.toFile().delete());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns FILESIZE bytes, rounded up to whole lines, of random
+     *  text drawn from RANDOM. */
+    private String text(Random random) {
+        int lines = (_fileSize + LINE - 1) / LINE;
+        StringBuilder result = new StringBuilder(lines * LINE);
+        for (int i = 0; i < lines; i += 1) {
+            result.append(line(random));
+        }
+        return result.toString();
+    }
+
+    /** Returns a line of random lowercase text drawn from RANDOM. */
+    private static String line(Random random) {
+        char[] result = new char[LINE];
+        for (int i = 0; i < LINE - 1; i += 1) {
+            result[i] = (char) ('a' + random.nextInt(26));
+        }
+        result[LINE - 1] = '\n';
+        return new String(result);
+    }
+
+    /** Rewrites a line of file K, chosen by RANDOM, or the whole file
+     *  if it is empty. */
+    private void edit(int k, Random random) {
+        String old = Utils.readContentsAsString(new File(file(k)));
+        int lines = old.length() / LINE;
+        if (lines == 0) {
+            write(k, line(random));
+            return;
+        }
+        int at = random.nextInt(lines) * LINE;
+        write(k, old.substring(0, at) + line(random)
+              + old.substring(at + LINE));
+    }
+
+    /** Writes CONTENTS to file K, making its directory if need be. */
+    private static void write(int k, String contents) {
+        File file = new File(file(k));
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Builds the repository of shape ARGS in the current directory:
+     *  COMMITS FILES FILESIZE BRANCHES CHURN [SEED].  What Gitlet prints
+     *  while building it is not shown. */
+    public static void main(String... args) {
+        if (args.length < 5 || args.length > 6) {
+            System.out.println("Usage: java gitlet.RepoGenerator COMMITS "
+                               + "FILES FILESIZE BRANCHES CHURN [SEED]");
+            return;
+        }
+        PrintStream stdout = System.out, stderr = System.err;
+        PrintStream nowhere =
+            new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(nowhere);
+        System.setErr(nowhere);
+        try {
+            new RepoGenerator(Integer.parseInt(args[0]),
+                              Integer.parseInt(args[1]),
+                              Integer.parseInt(args[2]),
+                              Integer.parseInt(args[3]),
+                              Double.parseDouble(args[4]),
+                              args.length == 6 ? Long.parseLong(args[5]) : 0)
+                .generate();
+        } catch (IllegalArgumentException excp) {
+            stdout.println(excp.getMessage());
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+    }
+
+    /** Commits made after the first. */
+    private final int _commits;
+    /** Number of files. */
+    private final int _files;
+    /** Size of each file as first written. */
+    private final int _fileSize;
+    /** Branches besides master. */
+    private final int _branches;
+    /** Fraction of the files of a branch changed in each commit. */
+    private final double _churn;
+    /** Seed of the random choices. */
+    private final long _seed;
+}
@@ -0,0 +1,192 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/** A persistent cache of the SHA1s of working files, keyed by file
+ *  name and recording each file's size, modification time and inode
+ *  when it was hashed. A file whose size, modification time and
+ *  inode still match its entry is not read again.
+ *
+ *  As in Git, an entry whose file was modified no earlier than the
+ *  cache itself was last written is "racily clean": the file may
+ *  have changed again within the same clock tick, so it is rehashed.
+ *
+ *  Lookups may be made from several threads at once.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class StatCache {
+    /** First four bytes of a cache file. */
+    private static final int MAGIC = 0x47535431;
+
+    /** The stat information and SHA1 recorded for one file. */
+    private static class Entry {
+        /** An entry for a file of SIZE bytes, modified at MTIME
+         *  nanoseconds with inode INODE, whose SHA1 is SHA. */
+        Entry(long size, long mtime, long inode, ObjectId sha) {
+            _size = size;
+            _mtime = mtime;
+            _inode = inode;
+            _sha = sha;
+        }
+        /** Returns true iff this entry describes the same file as
+         *  OTHER. */
+        boolean matches(Entry other) {
+            return _size == other._size && _mtime == other._mtime
+                && _inode == other._inode;
+        }
+        /** File size in bytes. */
+        private final long _size;
+        /** Modification time in nanoseconds. */
+        private final long _mtime;
+        /** Inode number, or 0 if the file system has none. */
+        private final long _inode;
+        /** SHA1 of the contents, or null if not yet known. */
+        private final ObjectId _sha;
+    }
+
+    /** A cache kept in FILE, reading its entries if FILE exists. */
+    StatCache(File file) {
+        _file = file;
+        if (!file.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                return;
+            }
+            _written = stat(file.toPath())._mtime;
+            int count = in.readInt();
+            byte[] sha = new byte[ObjectId.LENGTH];
+            for (int i = 0; i < count; i += 1) {
+                String name = in.readUTF();
+                long size = in.readLong();
+                long mtime = in.readLong();
+                long inode = in.readLong();
+                in.readFully(sha);
+                _entries.put(name, new Entry(size, mtime, inode,
+                                             ObjectId.fromBytes(sha, 0)));
+            }
+        } catch (IOException excp) {
+            _entries.clear();
+            _dirty = true;
+        }
+    }
+
+    /** Returns the SHA1 of the contents of the working file NAME,
+     *  hashing it only if it changed since it was last hashed. */
+    ObjectId sha(String name) {
+        Path path = new File(name).toPath();
+        Entry current;
+        try {
+            current = stat(path);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Entry cached = _entries.get(name);
+        if (cached != null && cached.matches(current)
+            && cached._mtime < _written) {
+            return cached._sha;
+        }
+        ObjectId sha = ObjectId.hash(path.toFile());
+        Trace.count(Trace.Counter.FILES_HASHED, 1);
+        Trace.count(Trace.Counter.BYTES_READ, current._size);
+        _entries.put(name, new Entry(current._size, current._mtime,
+                                     current._inode, sha));
+        _dirty = true;
+        return sha;
+    }
+
+    /** Records that the working file NAME, just written, has SHA1
+     *  SHA. */
+    void record(String name, ObjectId sha) {
+        try {
+            Entry current = stat(new File(name).toPath());
+            _entries.put(name, new Entry(current._size, current._mtime,
+                                         current._inode, sha));
+            _dirty = true;
+        } catch (IOException excp) {
+            forget(name);
+        }
+    }
+
+    /** Drops the entry of the working file NAME. */
+    void forget(String name) {
+        if (_entries.remove(name) != null) {
+            _dirty = true;
+        }
+    }
+
+    /** Writes this cache back to its file if it changed, dropping
+     *  entries of files that no longer exist. */
+    void write() {
+        if (!_dirty || !_file.getParentFile().isDirectory()) {
+            return;
+        }
+        _entries.keySet().removeIf(name -> !new File(name).isFile());
+        File tmp = new File(_file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(_entries.size());
+            for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry._size);
+                out.writeLong(entry._mtime);
+                out.writeLong(entry._inode);
+                out.write(entry._sha.toBytes());
+            }
+        } catch (IOException excp) {
+            tmp.delete();
+            return;
+        }
+        if (tmp.renameTo(_file)) {
+            _dirty = false;
+        }
+    }
+
+    /** Returns an entry without a SHA1 holding the size, modification
+     *  time and inode of PATH, read with a single stat. */
+    private static Entry stat(Path path) throws IOException {
+        Trace.count(Trace.Counter.FILES_STAT, 1);
+        try {
+            Map<String, Object> attrs =
+                Files.readAttributes(path, "unix:size,lastModifiedTime,ino");
+            return new Entry((Long) attrs.get("size"),
+                             nanos((FileTime) attrs.get("lastModifiedTime")),
+                             (Long) attrs.get("ino"), null);
+        } catch (UnsupportedOperationException excp) {
+            return new Entry(Files.size(path),
+                             nanos(Files.getLastModifiedTime(path)), 0, null);
+        }
+    }
+
+    /** Returns TIME in nanoseconds. */
+    private static long nanos(FileTime time) {
+        return time.to(TimeUnit.NANOSECONDS);
+    }
+
+    /** The file this cache is kept in. */
+    private final File _file;
+    /** Entries by working file name. */
+    private final ConcurrentHashMap<String, Entry> _entries =
+        new ConcurrentHashMap<String, Entry>();
+    /** Modification time of the cache file when it was read, in
+     *  nanoseconds; entries of files modified since are not trusted. */
+    private long _written = Long.MIN_VALUE;
+    /** True iff the entries changed since the cache was read. */
+    private volatile boolean _dirty;
+}
@@ -0,0 +1,184 @@
+package gitlet;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Tracing of a Gitlet command, turned on by the --trace flag.  While
+ *  on, the phases of the command (loading the repository's state,
+ *  running the command and storing the state) are timed as spans, and
+ *  the I/O done is counted; each span is written as a line of JSON when
+ *  it ends, and the counters, with the whole command's time, when the
+ *  command finishes.  While off, starting a span returns a shared span
+ *  that does nothing and counting is a test of a flag, so tracing
+ *  costs next to nothing unless it is asked for.  Counters may be
+ *  added to from several threads at once.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class Trace {
+    /** What is counted. */
+    enum Counter {
+        /** Working files whose size and times were read. */
+        FILES_STAT,
+        /** Working files hashed. */
+        FILES_HASHED,
+        /** Working files written by checkout, reset or merge. */
+        FILES_WRITTEN,
+        /** Working files deleted by checkout, reset or merge. */
+        FILES_DELETED,
+        /** Bytes read from files, after decompression. */
+        BYTES_READ,
+        /** Bytes written to files, before compression. */
+        BYTES_WRITTEN,
+        /** Stored blobs opened. */
+        BLOBS_OPENED,
+        /** Commits, trees and staging areas parsed. */
+        OBJECTS_PARSED;
+
+        /** Returns the name of this counter in JSON. */
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /** The count. */
+        private final LongAdder _count = new LongAdder();
+    }
+
+    /** A timed phase of a command, written out when closed. */
+    static class Span implements AutoCloseable {
+        /** A span named NAME starting now. */
+        private Span(String name) {
+            _name = name;
+            _start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            if (_name != null) {
+                long end = System.nanoTime();
+                emit(String.format(Locale.ROOT,
+                                   "{\"span\":%s,\"start_ms\":%.3f,"
+                                   + "\"ms\":%.3f}",
+                                   quote(_name), millis(_start - _began),
+                                   millis(end - _start)));
+            }
+        }
+
+        /** Name of the span, or null for the span that does nothing. */
+        private final String _name;
+        /** When the span started, in nanoseconds. */
+        private final long _start;
+    }
+
+    /** The span returned while tracing is off. */
+    private static final Span NONE = new Span(null);
+
+    /** Returns true iff ARG is a --trace flag: --trace, writing to
+     *  System.err, or --trace=FILE, appending to FILE. */
+    static boolean isFlag(String arg) {
+        return arg.equals("--trace") || arg.startsWith("--trace=");
+    }
+
+    /** Turns tracing on as the --trace flag FLAG asks.  Throws
+     *  IllegalArgumentException if its file cannot be opened. */
+    static void start(String flag) {
+        if (flag.equals("--trace")) {
+            start(System.err);
+            return;
+        }
+        try {
+            start(new PrintStream(new FileOutputStream(
+                flag.substring("--trace=".length()), true), true));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Turns tracing on, writing to OUT, with every counter at 0. */
+    static void start(PrintStream out) {
+        for (Counter counter : Counter.values()) {
+            counter._count.reset();
+        }
+        _out = out;
+        _began = System.nanoTime();
+        _on = true;
+    }
+
+    /** Returns true iff tracing is on. */
+    static boolean isOn() {
+        return _on;
+    }
+
+    /** Returns a span named NAME starting now, to be closed when it
+     *  ends. */
+    static Span span(String name) {
+        return _on ? new Span(name) : NONE;
+    }
+
+    /** Adds N to COUNTER. */
+    static void count(Counter counter, long n) {
+        if (_on) {
+            counter._count.add(n);
+        }
+    }
+
+    /** Returns the count of COUNTER since tracing was turned on. */
+    static long get(Counter counter) {
+        return counter._count.sum();
+    }
+
+    /** Writes the time and counters of COMMAND, which is null if there
+     *  was none, and turns tracing off. */
+    static void finish(String command) {
+        if (!_on) {
+            return;
+        }
+        StringBuilder line = new StringBuilder("{\"command\":");
+        line.append(command == null ? "null" : quote(command));
+        line.append(String.format(Locale.ROOT, ",\"ms\":%.3f",
+                                  millis(System.nanoTime() - _began)));
+        for (Counter counter : Counter.values()) {
+            line.append(",\"").append(counter.key()).append("\":")
+                .append(get(counter));
+        }
+        emit(line.append('}').toString());
+        _on = false;
+        if (_out != System.err) {
+            _out.close();
+        }
+    }
+
+    /** Writes LINE of JSON. */
+    private static synchronized void emit(String line) {
+        _out.println(line);
+        _out.flush();
+    }
+
+    /** Returns S as a JSON string. */
+    static String quote(String s) {
+        StringBuilder result = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < ' ') {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    /** Returns NANOS in milliseconds. */
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /** True iff tracing is on. */
+    private static boolean _on;
+    /** Where the trace is written. */
+    private static PrintStream _out;
+    /** When tracing was turned on, in nanoseconds. */
+    private static long _began;
+}
@@ -0,0 +1,45 @@
+package gitlet;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+import ucb.junit.textui;
+
+public class TraceTest {
+
+    @Test
+    public void writesSpansAndCounters() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Trace.start(new PrintStream(bytes, true));
+        Trace.Span span = Trace.span("load");
+        Trace.count(Trace.Counter.FILES_HASHED, 2);
+        Trace.count(Trace.Counter.FILES_HASHED, 3);
+        span.close();
+        Trace.finish("say \"hi\"");
+        String[] lines = bytes.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"span\":\"load\",\"start_ms\":"));
+        assertTrue(lines[1].startsWith("{\"command\":\"say \\\"hi\\\"\","));
+        assertTrue(lines[1].contains(",\"files_hashed\":5,"));
+        assertTrue(lines[1].endsWith(",\"objects_parsed\":0}"));
+    }
+
+    @Test
+    public void doesNothingWhenOff() {
+        assertFalse(Trace.isOn());
+        assertSame(Trace.span("load"), Trace.span("store"));
+        long before = Trace.get(Trace.Counter.BYTES_READ);
+        Trace.count(Trace.Counter.BYTES_READ, 100);
+        assertEquals(before, Trace.get(Trace.Counter.BYTES_READ));
+        Trace.finish("status");
+    }
+
+    public static void main(String[] args) {
+        System.exit(textui.runClasses(TraceTest.class));
+    }
+
+}
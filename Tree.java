@@ -0,0 +1,253 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/** One directory of a commit's files: a list, sorted by name, of the
+ *  files and subdirectories directly in it, each with its SHA1.  A
+ *  file's SHA1 names its blob and a subdirectory's names its Tree, so
+ *  a tree's SHA1 stands for everything below it, and equal subtrees
+ *  need not be looked into.  Trees are immutable.
+ *
+ *  A large directory is split into pages, making a persistent search
+ *  tree: the leaves, at height 0, hold the entries, and each node
+ *  above them holds, for each of its children, the name of its first
+ *  entry and its SHA1.  A page ends just before a name whose level is
+ *  more than the page's height.  Since a name's level depends only on
+ *  the name, the pages of a directory depend only on its contents, so
+ *  two versions of a directory share every page but those around the
+ *  names that differ.  A directory small enough for one page is a
+ *  single leaf.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class Tree {
+    /** The tree of an empty directory. */
+    static final Tree EMPTY = new Tree(0, new ArrayList<Entry>());
+    /** Bits of a name's hash making up each of its levels, so that
+     *  pages have 1 << LEVEL_BITS entries on average. */
+    private static final int LEVEL_BITS = 6;
+
+    /** A file or subdirectory of a tree. */
+    static class Entry {
+        /** An entry for the file or, if ISTREE, subdirectory NAME whose
+         *  SHA1 is ID. */
+        Entry(String name, ObjectId id, boolean isTree) {
+            _name = name;
+            _id = id;
+            _isTree = isTree;
+        }
+
+        /** Returns the name of this file or subdirectory. */
+        String name() {
+            return _name;
+        }
+
+        /** Returns the SHA1 of this file's blob or subdirectory's tree. */
+        ObjectId id() {
+            return _id;
+        }
+
+        /** Returns true iff this is a subdirectory. */
+        boolean isTree() {
+            return _isTree;
+        }
+
+        /** Name of the file or subdirectory. */
+        private final String _name;
+        /** SHA1 of its blob or tree. */
+        private final ObjectId _id;
+        /** True iff this is a subdirectory. */
+        private final boolean _isTree;
+    }
+
+    /** A page at HEIGHT of ENTRIES, which are sorted by name with no
+     *  two having the same name. */
+    Tree(int height, List<Entry> entries) {
+        _height = height;
+        _entries = Collections.unmodifiableList(entries);
+        _id = ObjectId.hash(serialize());
+    }
+
+    /** Returns the SHA1 of this tree. */
+    ObjectId id() {
+        return _id;
+    }
+
+    /** Returns the height of this page: 0 for a leaf. */
+    int height() {
+        return _height;
+    }
+
+    /** Returns the entries of this page, sorted by name: the files and
+     *  subdirectories of a leaf, and the children of any other page. */
+    List<Entry> entries() {
+        return _entries;
+    }
+
+    /** Returns the entry of this leaf named NAME, or null if there is
+     *  none. */
+    Entry find(String name) {
+        int k = search(name);
+        return k >= 0 && _entries.get(k).name().equals(name)
+            ? _entries.get(k) : null;
+    }
+
+    /** Returns the child of this page above the leaves that would hold
+     *  the entry named NAME: the last whose first name is not after
+     *  NAME, or the first. */
+    Entry child(String name) {
+        return _entries.get(Math.max(search(name), 0));
+    }
+
+    /** Returns the child of this page above the leaves that holds the
+     *  entries just before NAME: the last whose first name is before
+     *  NAME, or the first. */
+    Entry childBefore(String name) {
+        int k = search(name);
+        if (k >= 0 && _entries.get(k).name().equals(name)) {
+            k -= 1;
+        }
+        return _entries.get(Math.max(k, 0));
+    }
+
+    /** Returns the name of the first entry of this page, or "" if it
+     *  is empty. */
+    String first() {
+        return _entries.isEmpty() ? "" : _entries.get(0).name();
+    }
+
+    /** Returns the entry naming this page in the page above it. */
+    Entry reference() {
+        return new Entry(first(), _id, true);
+    }
+
+    /** Returns the index of the last entry whose name is not after
+     *  NAME, or -1 if there is none. */
+    private int search(String name) {
+        int lo = 0, hi = _entries.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (_entries.get(mid).name().compareTo(name) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return hi;
+    }
+
+    /** Returns the level of NAME: the number of whole groups of
+     *  LEVEL_BITS zero bits at the bottom of its hash. */
+    static int level(String name) {
+        long h = name.hashCode() * 0x9e3779b97f4a7c15L;
+        h = (h ^ (h >>> 31)) * 0xbf58476d1ce4e5b9L;
+        h ^= h >>> 29;
+        return Long.numberOfTrailingZeros(h) / LEVEL_BITS;
+    }
+
+    /** Returns the pages of a directory holding ENTRIES, which are
+     *  sorted by name, each after its children.  The last is the
+     *  root. */
+    static List<Tree> pages(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return new ArrayList<Tree>(Collections.singletonList(EMPTY));
+        }
+        List<Tree> result = new ArrayList<Tree>();
+        List<Tree> level = split(0, entries);
+        for (int height = 1; ; height += 1) {
+            result.addAll(level);
+            if (level.size() == 1) {
+                return result;
+            }
+            level = split(height, references(level));
+        }
+    }
+
+    /** Returns the pages at HEIGHT holding ITEMS, which are sorted by
+     *  name: the first starts with the first item, and each other just
+     *  before an item whose level is more than HEIGHT.  There are none
+     *  if there are no ITEMS. */
+    static List<Tree> split(int height, List<Entry> items) {
+        List<Tree> result = new ArrayList<Tree>();
+        List<Entry> page = new ArrayList<Entry>();
+        for (Entry item : items) {
+            if (!page.isEmpty() && level(item.name()) > height) {
+                result.add(new Tree(height, page));
+                page = new ArrayList<Entry>();
+            }
+            page.add(item);
+        }
+        if (!page.isEmpty()) {
+            result.add(new Tree(height, page));
+        }
+        return result;
+    }
+
+    /** Returns the entries naming PAGES in the pages above them. */
+    static List<Entry> references(List<Tree> pages) {
+        List<Entry> result = new ArrayList<Entry>();
+        for (Tree page : pages) {
+            result.add(page.reference());
+        }
+        return result;
+    }
+
+    /** Returns this tree as stored: its height, a count of entries,
+     *  then for each a flag that is 1 for subdirectories, its name and
+     *  its SHA1. */
+    byte[] serialize() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(_height);
+            out.writeInt(_entries.size());
+            for (Entry entry : _entries) {
+                out.writeBoolean(entry.isTree());
+                out.writeUTF(entry.name());
+                out.write(entry.id().toBytes());
+            }
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the tree stored as CONTENTS, taking each name from
+     *  NAMES if it is there and adding it otherwise, so that a name is
+     *  kept once however many pages hold it. */
+    static Tree parse(byte[] contents, Map<String, String> names) {
+        Trace.count(Trace.Counter.OBJECTS_PARSED, 1);
+        try {
+            DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(contents));
+            int height = in.readByte();
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<Entry>(count);
+            byte[] sha = new byte[ObjectId.LENGTH];
+            for (int i = 0; i < count; i += 1) {
+                boolean isTree = in.readBoolean();
+                String name = names.computeIfAbsent(in.readUTF(), n -> n);
+                in.readFully(sha);
+                entries.add(new Entry(name, ObjectId.fromBytes(sha, 0),
+                                      isTree));
+            }
+            return new Tree(height, entries);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException("bad tree");
+        }
+    }
+
+    /** The height of this page. */
+    private final int _height;
+    /** The entries, sorted by name. */
+    private final List<Entry> _entries;
+    /** The SHA1 of this tree. */
+    private final ObjectId _id;
+}
@@ -0,0 +1,315 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/** Differences between trees, each either a sorted map from file names
+ *  to SHA1s or a stored Tree.  A three-way diff compares two trees,
+ *  "ours" and "theirs", with a common base, as merge does; a two-way
+ *  diff compares one tree with a base.  Trees are walked together in
+ *  name order, so a diff takes time linear in the sizes of the trees;
+ *  a walk of stored Trees skips every subtree, and every page of a
+ *  large directory, whose SHA1 is the same on all sides, so it takes
+ *  time linear in the sizes of the pages that changed.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class TreeDiff {
+
+    /** How one side's version of a file differs from the base's. */
+    enum Change {
+        /** Same SHA1 as in the base, or absent from both. */
+        UNCHANGED,
+        /** Absent from the base. */
+        ADDED,
+        /** Present in both with different SHA1s. */
+        MODIFIED,
+        /** Absent from this side. */
+        DELETED;
+
+        /** Returns how a file whose SHA1 is BASE in the base and SIDE in
+         *  another tree, either being null if the file is absent,
+         *  changed. */
+        static Change of(ObjectId base, ObjectId side) {
+            if (base == null) {
+                return side == null ? UNCHANGED : ADDED;
+            } else if (side == null) {
+                return DELETED;
+            } else {
+                return base.equals(side) ? UNCHANGED : MODIFIED;
+            }
+        }
+    }
+
+    /** One file changed on at least one side. */
+    static class Entry {
+        /** An entry for the file NAME, whose SHA1s in the base, ours and
+         *  theirs are BASE, OURS and THEIRS, null where it is absent. */
+        Entry(String name, ObjectId base, ObjectId ours, ObjectId theirs) {
+            _name = name;
+            _base = base;
+            _ours = ours;
+            _theirs = theirs;
+        }
+
+        /** Returns the file name. */
+        String name() {
+            return _name;
+        }
+
+        /** Returns the file's SHA1 in the base, or null. */
+        ObjectId base() {
+            return _base;
+        }
+
+        /** Returns the file's SHA1 in our tree, or null. */
+        ObjectId ours() {
+            return _ours;
+        }
+
+        /** Returns the file's SHA1 in their tree, or null. */
+        ObjectId theirs() {
+            return _theirs;
+        }
+
+        /** Returns how our version differs from the base's. */
+        Change oursChange() {
+            return Change.of(_base, _ours);
+        }
+
+        /** Returns how their version differs from the base's. */
+        Change theirsChange() {
+            return Change.of(_base, _theirs);
+        }
+
+        /** Returns true iff both sides ended up with the same version,
+         *  or both deleted the file. */
+        boolean sameOnBothSides() {
+            return _ours == null ? _theirs == null : _ours.equals(_theirs);
+        }
+
+        @Override
+        public String toString() {
+            return _name + " " + oursChange() + " " + theirsChange();
+        }
+
+        /** File name. */
+        private final String _name;
+        /** SHA1s in the base, ours and theirs. */
+        private final ObjectId _base, _ours, _theirs;
+    }
+
+    /** Returns the entries of the files whose SHA1s in OURS differ from
+     *  those in BASE, in name order.  Each entry's theirs is its
+     *  base. */
+    static List<Entry> diff(SortedMap<String, ObjectId> base,
+                            SortedMap<String, ObjectId> ours) {
+        return diff(base, ours, base);
+    }
+
+    /** Returns the entries of the files whose SHA1s in OURS or THEIRS
+     *  differ from those in BASE, in name order. */
+    static List<Entry> diff(SortedMap<String, ObjectId> base,
+                            SortedMap<String, ObjectId> ours,
+                            SortedMap<String, ObjectId> theirs) {
+        List<Entry> result = new ArrayList<Entry>();
+        Cursor b = new Cursor(base), o = new Cursor(ours);
+        Cursor t = new Cursor(theirs);
+        while (true) {
+            String name = min(b.name(), min(o.name(), t.name()));
+            if (name == null) {
+                return result;
+            }
+            ObjectId baseSha = b.take(name), oursSha = o.take(name);
+            ObjectId theirsSha = t.take(name);
+            if (Change.of(baseSha, oursSha) != Change.UNCHANGED
+                || Change.of(baseSha, theirsSha) != Change.UNCHANGED) {
+                result.add(new Entry(name, baseSha, oursSha, theirsSha));
+            }
+        }
+    }
+
+    /** Returns the entries of the files whose SHA1s in the tree named
+     *  OURS differ from those in the tree named BASE, both read from
+     *  TREES, in the order of a walk of the trees.  Each entry's theirs
+     *  is its base. */
+    static List<Entry> diff(TreeStore trees, ObjectId base, ObjectId ours) {
+        return diff(trees, base, ours, base);
+    }
+
+    /** Returns the entries of the files whose SHA1s in the trees named
+     *  OURS or THEIRS differ from those in the tree named BASE, all read
+     *  from TREES, in the order of a walk of the trees: each directory
+     *  in name order, with a subdirectory's files just after any file
+     *  of the same name. */
+    static List<Entry> diff(TreeStore trees, ObjectId base, ObjectId ours,
+                            ObjectId theirs) {
+        List<Entry> result = new ArrayList<Entry>();
+        walk(trees, "", base, ours, theirs, result);
+        return result;
+    }
+
+    /** Adds to RESULT the entries of the three-way diff of the trees
+     *  named BASE, OURS and THEIRS, read from TREES, naming each file
+     *  with PREFIX before its name. */
+    private static void walk(TreeStore trees, String prefix, ObjectId base,
+                             ObjectId ours, ObjectId theirs,
+                             List<Entry> result) {
+        if (base.equals(ours) && base.equals(theirs)) {
+            return;
+        }
+        TreeCursor b = new TreeCursor(trees.leaves(base));
+        TreeCursor o = new TreeCursor(trees.leaves(ours));
+        TreeCursor t = new TreeCursor(trees.leaves(theirs));
+        while (true) {
+            ObjectId leaf = b.leaf();
+            if (leaf != null && leaf.equals(o.leaf())
+                && leaf.equals(t.leaf())) {
+                b.skipLeaf();
+                o.skipLeaf();
+                t.skipLeaf();
+                continue;
+            }
+            String name = min(b.name(), min(o.name(), t.name()));
+            if (name == null) {
+                return;
+            }
+            Tree.Entry baseEntry = b.take(name), oursEntry = o.take(name);
+            Tree.Entry theirsEntry = t.take(name);
+            ObjectId baseSha = file(baseEntry), oursSha = file(oursEntry);
+            ObjectId theirsSha = file(theirsEntry);
+            if (Change.of(baseSha, oursSha) != Change.UNCHANGED
+                || Change.of(baseSha, theirsSha) != Change.UNCHANGED) {
+                result.add(new Entry(prefix + name, baseSha, oursSha,
+                                     theirsSha));
+            }
+            walk(trees, prefix + name + "/", directory(baseEntry),
+                 directory(oursEntry), directory(theirsEntry), result);
+        }
+    }
+
+    /** Returns the SHA1 of ENTRY if it is a file, and otherwise
+     *  null. */
+    private static ObjectId file(Tree.Entry entry) {
+        return entry == null || entry.isTree() ? null : entry.id();
+    }
+
+    /** Returns the SHA1 of ENTRY if it is a directory, and otherwise
+     *  that of the empty tree. */
+    private static ObjectId directory(Tree.Entry entry) {
+        return entry != null && entry.isTree() ? entry.id()
+            : Tree.EMPTY.id();
+    }
+
+    /** Returns the lesser of the names A and B, where null stands for a
+     *  name after all others. */
+    private static String min(String a, String b) {
+        if (a == null) {
+            return b;
+        } else if (b == null) {
+            return a;
+        }
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    /** A position in a stored directory. */
+    private static class TreeCursor {
+        /** A cursor at the first entry of the directory whose leaves
+         *  are LEAVES. */
+        TreeCursor(List<Tree> leaves) {
+            _leaves = leaves;
+            settle();
+        }
+
+        /** Returns the name of the current entry, or null at the end. */
+        String name() {
+            return _leaf == _leaves.size() ? null : current().name();
+        }
+
+        /** Returns the SHA1 of the current leaf if the current entry is
+         *  its first, and otherwise null. */
+        ObjectId leaf() {
+            return _leaf == _leaves.size() || _entry > 0 ? null
+                : _leaves.get(_leaf).id();
+        }
+
+        /** Moves to the first entry of the next leaf. */
+        void skipLeaf() {
+            _leaf += 1;
+            _entry = 0;
+            settle();
+        }
+
+        /** Returns the current entry and moves to the next if the
+         *  current entry is NAME; otherwise returns null. */
+        Tree.Entry take(String name) {
+            if (_leaf == _leaves.size() || !current().name().equals(name)) {
+                return null;
+            }
+            Tree.Entry result = current();
+            _entry += 1;
+            settle();
+            return result;
+        }
+
+        /** Returns the current entry. */
+        private Tree.Entry current() {
+            return _leaves.get(_leaf).entries().get(_entry);
+        }
+
+        /** Moves past the end of any exhausted leaves. */
+        private void settle() {
+            while (_leaf < _leaves.size()
+                   && _entry == _leaves.get(_leaf).entries().size()) {
+                _leaf += 1;
+                _entry = 0;
+            }
+        }
+
+        /** The leaves of the directory. */
+        private final List<Tree> _leaves;
+        /** Index of the current leaf. */
+        private int _leaf;
+        /** Index of the current entry in its leaf. */
+        private int _entry;
+    }
+
+    /** A position in a tree. */
+    private static class Cursor {
+        /** A cursor at the first file of TREE. */
+        Cursor(SortedMap<String, ObjectId> tree) {
+            _files = tree == null
+                ? Collections.<Map.Entry<String, ObjectId>>emptyIterator()
+                : tree.entrySet().iterator();
+            advance();
+        }
+
+        /** Returns the name of the current file, or null at the end. */
+        String name() {
+            return _current == null ? null : _current.getKey();
+        }
+
+        /** Returns the SHA1 of the current file and moves to the next
+         *  if the current file is NAME; otherwise returns null. */
+        ObjectId take(String name) {
+            if (_current == null || !_current.getKey().equals(name)) {
+                return null;
+            }
+            ObjectId result = _current.getValue();
+            advance();
+            return result;
+        }
+
+        /** Moves to the next file. */
+        private void advance() {
+            _current = _files.hasNext() ? _files.next() : null;
+        }
+
+        /** The files after the current one. */
+        private final Iterator<Map.Entry<String, ObjectId>> _files;
+        /** The current file, or null at the end. */
+        private Map.Entry<String, ObjectId> _current;
+    }
+}
@@ -0,0 +1,82 @@
+package gitlet;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import ucb.junit.textui;
+
+public class TreeDiffTest {
+
+    /** Returns a tree of the files named in NAMES, each with the SHA1
+     *  of its name followed by VERSION. */
+    private static TreeMap<String, ObjectId> tree(String version,
+                                                  String... names) {
+        TreeMap<String, ObjectId> result = new TreeMap<String, ObjectId>();
+        for (String name : names) {
+            result.put(name, ObjectId.hash(name, version));
+        }
+        return result;
+    }
+
+    @Test
+    public void classifiesEachSide() {
+        TreeMap<String, ObjectId> base = tree("0", "a", "b", "c", "d");
+        TreeMap<String, ObjectId> ours = tree("0", "a", "b", "d");
+        ours.putAll(tree("1", "b", "e"));
+        TreeMap<String, ObjectId> theirs = tree("0", "a", "c");
+        theirs.putAll(tree("2", "b", "f"));
+        List<TreeDiff.Entry> diff = TreeDiff.diff(base, ours, theirs);
+        assertEquals("[b MODIFIED MODIFIED, c DELETED UNCHANGED, "
+                     + "d UNCHANGED DELETED, e ADDED UNCHANGED, "
+                     + "f UNCHANGED ADDED]", diff.toString());
+        assertFalse(diff.get(0).sameOnBothSides());
+        assertEquals(ObjectId.hash("f", "2"), diff.get(4).theirs());
+    }
+
+    @Test
+    public void twoWay() {
+        TreeMap<String, ObjectId> base = tree("0", "a", "b");
+        TreeMap<String, ObjectId> target = tree("1", "b", "c");
+        target.put("a", base.get("a"));
+        List<TreeDiff.Entry> diff = TreeDiff.diff(base, target);
+        assertEquals("[b MODIFIED UNCHANGED, c ADDED UNCHANGED]",
+                     diff.toString());
+        assertEquals(0, TreeDiff.diff(base, base).size());
+    }
+
+    @Test
+    public void walksStoredTrees() throws IOException {
+        File dir = Files.createTempDirectory("trees").toFile();
+        TreeStore trees = new TreeStore(dir);
+        TreeMap<String, ObjectId> base =
+            tree("0", "a", "d/x", "d/y", "e/f/g", "same/z");
+        TreeMap<String, ObjectId> ours = new TreeMap<String, ObjectId>(base);
+        ours.remove("a");
+        ours.putAll(tree("1", "a/b", "d/x"));
+        TreeMap<String, ObjectId> theirs =
+            new TreeMap<String, ObjectId>(base);
+        theirs.remove("e/f/g");
+        theirs.putAll(tree("2", "d/x", "d/z"));
+        ObjectId root = trees.update(Tree.EMPTY.id(), base);
+        List<TreeDiff.Entry> diff = TreeDiff.diff(trees, root,
+            trees.update(Tree.EMPTY.id(), ours),
+            trees.update(Tree.EMPTY.id(), theirs));
+        assertEquals("[a DELETED UNCHANGED, a/b ADDED UNCHANGED, "
+                     + "d/x MODIFIED MODIFIED, d/z UNCHANGED ADDED, "
+                     + "e/f/g UNCHANGED DELETED]", diff.toString());
+        assertEquals(TreeDiff.diff(base, ours, theirs).size(), diff.size());
+        assertEquals(0, TreeDiff.diff(trees, root, root).size());
+    }
+
+    public static void main(String[] args) {
+        System.exit(textui.runClasses(TreeDiffTest.class));
+    }
+
+}
@@ -0,0 +1,316 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/** The trees of a repository, each in a file of its directory named
+ *  by its SHA1, except for the empty tree, which is never written.
+ *  Files are named by paths relative to the working directory, with
+ *  components separated by '/'.  Trees are read once and kept, so the
+ *  pages that versions of a directory have in common are held in
+ *  memory once, and so are names, however many pages hold them.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class TreeStore {
+    /** A store of the trees kept in DIR. */
+    TreeStore(File dir) {
+        _dir = dir;
+        _trees.put(Tree.EMPTY.id(), Tree.EMPTY);
+    }
+
+    /** Returns the tree named ID.  Throws IllegalArgumentException if
+     *  there is no such tree. */
+    Tree read(ObjectId id) {
+        Tree result = _trees.get(id);
+        if (result == null) {
+            File file = new File(_dir, id.toString());
+            if (!file.isFile()) {
+                throw new IllegalArgumentException("no tree " + id);
+            }
+            result = Tree.parse(Utils.readContents(file), _names);
+            _trees.put(id, result);
+        }
+        return result;
+    }
+
+    /** Stores TREE unless it is already stored, and returns its
+     *  SHA1. */
+    ObjectId write(Tree tree) {
+        ObjectId id = tree.id();
+        if (!_trees.containsKey(id)) {
+            File file = new File(_dir, id.toString());
+            if (!file.isFile()) {
+                _dir.mkdirs();
+                Utils.writeContents(file, tree.serialize());
+            }
+            _trees.put(id, tree);
+        }
+        return id;
+    }
+
+    /** Returns the entry named NAME of the directory whose tree is
+     *  named DIR, or null if there is none. */
+    Tree.Entry find(ObjectId dir, String name) {
+        Tree page = read(dir);
+        while (page.height() > 0) {
+            page = read(page.child(name).id());
+        }
+        return page.find(name);
+    }
+
+    /** Returns the leaves of the directory whose tree is named DIR, in
+     *  order. */
+    List<Tree> leaves(ObjectId dir) {
+        List<Tree> result = new ArrayList<Tree>();
+        leaves(read(dir), result);
+        return result;
+    }
+
+    /** Adds the leaves at or below PAGE to RESULT, in order. */
+    private void leaves(Tree page, List<Tree> result) {
+        if (page.height() == 0) {
+            result.add(page);
+        } else {
+            for (Tree.Entry child : page.entries()) {
+                leaves(read(child.id()), result);
+            }
+        }
+    }
+
+    /** Returns the SHA1 of the file PATH in the tree named ROOT, or
+     *  null if it has no such file. */
+    ObjectId get(ObjectId root, String path) {
+        ObjectId dir = root;
+        int start = 0;
+        for (int slash = path.indexOf('/'); slash >= 0;
+             slash = path.indexOf('/', start)) {
+            Tree.Entry entry = find(dir, path.substring(start, slash));
+            if (entry == null || !entry.isTree()) {
+                return null;
+            }
+            dir = entry.id();
+            start = slash + 1;
+        }
+        Tree.Entry entry = find(dir, path.substring(start));
+        return entry == null || entry.isTree() ? null : entry.id();
+    }
+
+    /** Returns the SHA1 of the tree that is the tree named ROOT with
+     *  CHANGES made, each mapping a path either to the SHA1 of its new
+     *  contents or to null to remove it, storing the trees made.  Only
+     *  the directories on the paths changed are rewritten, and of their
+     *  pages only those around the names changed are read and made
+     *  anew; every other subtree and page is shared with ROOT.
+     *  Directories left empty vanish, and a file replaces any directory
+     *  of the same name and vice versa. */
+    ObjectId update(ObjectId root, SortedMap<String, ObjectId> changes) {
+        if (changes.isEmpty()) {
+            return root;
+        }
+        TreeMap<String, Tree.Entry> edits =
+            new TreeMap<String, Tree.Entry>();
+        TreeMap<String, TreeMap<String, ObjectId>> below =
+            new TreeMap<String, TreeMap<String, ObjectId>>();
+        for (Map.Entry<String, ObjectId> change : changes.entrySet()) {
+            String path = change.getKey();
+            int slash = path.indexOf('/');
+            if (slash >= 0) {
+                below.computeIfAbsent(path.substring(0, slash),
+                                      k -> new TreeMap<String, ObjectId>())
+                    .put(path.substring(slash + 1), change.getValue());
+            } else if (change.getValue() != null) {
+                edits.put(path,
+                          new Tree.Entry(path, change.getValue(), false));
+            } else {
+                Tree.Entry old = find(root, path);
+                if (old != null && !old.isTree()) {
+                    edits.put(path, null);
+                }
+            }
+        }
+        for (Map.Entry<String, TreeMap<String, ObjectId>> sub
+                 : below.entrySet()) {
+            String name = sub.getKey();
+            Tree.Entry old = edits.containsKey(name) ? edits.get(name)
+                : find(root, name);
+            ObjectId id = update(old != null && old.isTree() ? old.id()
+                                 : Tree.EMPTY.id(), sub.getValue());
+            if (!id.equals(Tree.EMPTY.id())) {
+                edits.put(name, new Tree.Entry(name, id, true));
+            } else if (old != null && old.isTree()) {
+                edits.put(name, null);
+            }
+        }
+        return updateDirectory(root, edits);
+    }
+
+    /** Returns the SHA1 of the directory that is the directory whose
+     *  tree is named DIR with EDITS made, each mapping a name to its
+     *  new entry or to null to remove it, storing the pages made.
+     *
+     *  The pages are remade a height at a time, from the leaves up,
+     *  with only those pages read that hold the names edited at that
+     *  height.  Since a page starts just before a name of a higher
+     *  level, remaking those pages from their entries, with the edits
+     *  made, gives the pages that paging the whole directory would,
+     *  unless the first name of one is removed, when its entries join
+     *  the page before it, which is remade too.  The edits of the next
+     *  height replace the entries naming the pages remade with entries
+     *  naming the new ones. */
+    private ObjectId updateDirectory(ObjectId dir,
+                                     SortedMap<String, Tree.Entry> edits) {
+        Tree root = read(dir);
+        HashMap<ObjectId, Tree> made = new HashMap<ObjectId, Tree>();
+        SortedMap<String, Tree.Entry> pending = edits;
+        for (int height = 0; ; height += 1) {
+            if (pending.isEmpty()) {
+                return dir;
+            }
+            TreeMap<String, Tree> old = new TreeMap<String, Tree>();
+            for (String name : pending.keySet()) {
+                Tree page = page(root, height, name, false);
+                old.put(page.first(), page);
+            }
+            for (String first = old.firstKey(); first != null;
+                 first = old.higherKey(first)) {
+                if (pending.containsKey(first) && pending.get(first) == null) {
+                    Tree before = page(root, height, first, true);
+                    if (!before.first().equals(first)
+                        && old.put(before.first(), before) == null) {
+                        first = old.firstKey();
+                    }
+                }
+            }
+            TreeMap<String, Tree.Entry> items =
+                new TreeMap<String, Tree.Entry>();
+            for (Tree page : old.values()) {
+                for (Tree.Entry entry : page.entries()) {
+                    items.put(entry.name(), entry);
+                }
+            }
+            for (Map.Entry<String, Tree.Entry> edit : pending.entrySet()) {
+                if (edit.getValue() == null) {
+                    items.remove(edit.getKey());
+                } else {
+                    items.put(edit.getKey(), edit.getValue());
+                }
+            }
+            List<Tree> pages = Tree.split(height,
+                new ArrayList<Tree.Entry>(items.values()));
+            if (height == root.height()) {
+                return writeTop(pages, height, made);
+            }
+            TreeMap<String, Tree.Entry> next =
+                new TreeMap<String, Tree.Entry>();
+            for (Tree page : old.values()) {
+                next.put(page.first(), null);
+            }
+            for (Tree page : pages) {
+                made.put(page.id(), page);
+                Tree.Entry entry = page.reference();
+                Tree was = old.get(entry.name());
+                if (was != null && was.id().equals(page.id())) {
+                    next.remove(entry.name());
+                } else {
+                    next.put(entry.name(), entry);
+                }
+            }
+            pending = next;
+        }
+    }
+
+    /** Returns the page at HEIGHT of the directory whose root is ROOT
+     *  that holds the entries just before NAME if BEFORE, or else the
+     *  one that holds, or would hold, NAME. */
+    private Tree page(Tree root, int height, String name, boolean before) {
+        Tree page = root;
+        while (page.height() > height) {
+            page = read(before ? page.childBefore(name).id()
+                        : page.child(name).id());
+        }
+        return page;
+    }
+
+    /** Stores the pages of a directory whose pages at HEIGHT are PAGES,
+     *  along with the pages above them and those in MADE below them,
+     *  and returns the SHA1 of its root. */
+    private ObjectId writeTop(List<Tree> pages, int height,
+                              HashMap<ObjectId, Tree> made) {
+        if (pages.isEmpty()) {
+            return Tree.EMPTY.id();
+        }
+        for (int up = height + 1; pages.size() > 1; up += 1) {
+            for (Tree page : pages) {
+                made.put(page.id(), page);
+            }
+            pages = Tree.split(up, Tree.references(pages));
+        }
+        Tree top = pages.get(0);
+        made.put(top.id(), top);
+        while (top.height() > 0 && top.entries().size() == 1) {
+            ObjectId child = top.entries().get(0).id();
+            top = made.containsKey(child) ? made.get(child) : read(child);
+        }
+        for (Tree page : made.values()) {
+            if (page.height() <= top.height()) {
+                write(page);
+            }
+        }
+        return top.id();
+    }
+
+    /** Returns the path and SHA1 of every file in the tree named
+     *  ROOT. */
+    TreeMap<String, ObjectId> flatten(ObjectId root) {
+        TreeMap<String, ObjectId> result = new TreeMap<String, ObjectId>();
+        flatten(root, "", result);
+        return result;
+    }
+
+    /** Adds to RESULT the path, prefixed with PREFIX, and SHA1 of
+     *  every file in the tree named ID. */
+    private void flatten(ObjectId id, String prefix,
+                         TreeMap<String, ObjectId> result) {
+        for (Tree leaf : leaves(id)) {
+            for (Tree.Entry entry : leaf.entries()) {
+                if (entry.isTree()) {
+                    flatten(entry.id(), prefix + entry.name() + "/",
+                            result);
+                } else {
+                    result.put(prefix + entry.name(), entry.id());
+                }
+            }
+        }
+    }
+
+    /** Returns the number of files in the tree named ROOT. */
+    int size(ObjectId root) {
+        Integer result = _sizes.get(root);
+        if (result == null) {
+            result = 0;
+            for (Tree leaf : leaves(root)) {
+                for (Tree.Entry entry : leaf.entries()) {
+                    result += entry.isTree() ? size(entry.id()) : 1;
+                }
+            }
+            _sizes.put(root, result);
+        }
+        return result;
+    }
+
+    /** Directory of stored trees. */
+    private final File _dir;
+    /** The trees read or written so far, by SHA1. */
+    private final HashMap<ObjectId, Tree> _trees =
+        new HashMap<ObjectId, Tree>();
+    /** The names in the trees read so far, each kept once. */
+    private final HashMap<String, String> _names =
+        new HashMap<String, String>();
+    /** Numbers of files of the trees counted so far, by SHA1. */
+    private final HashMap<ObjectId, Integer> _sizes =
+        new HashMap<ObjectId, Integer>();
+}
@@ -0,0 +1,149 @@
+package gitlet;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import ucb.junit.textui;
+
+public class TreeStoreTest {
+
+    /** Returns a map of each of PATHS to the SHA1 of the path followed
+     *  by VERSION. */
+    private static TreeMap<String, ObjectId> files(String version,
+                                                   String... paths) {
+        TreeMap<String, ObjectId> result = new TreeMap<String, ObjectId>();
+        for (String path : paths) {
+            result.put(path, ObjectId.hash(path, version));
+        }
+        return result;
+    }
+
+    @Test
+    public void sharesUnchangedSubtrees() throws IOException {
+        File dir = Files.createTempDirectory("trees").toFile();
+        TreeStore trees = new TreeStore(dir);
+        TreeMap<String, ObjectId> all =
+            files("0", "README", "src/a/A.java", "src/a/B.java",
+                  "src/b/C.java", "test/T.java");
+        ObjectId root = trees.update(Tree.EMPTY.id(), all);
+        assertEquals(all, trees.flatten(root));
+        assertEquals(5, trees.size(root));
+        int stored = dir.list().length;
+        ObjectId changed =
+            trees.update(root, files("1", "src/a/A.java"));
+        assertEquals(stored + 3, dir.list().length);
+        assertEquals(ObjectId.hash("src/a/A.java", "1"),
+                     trees.get(changed, "src/a/A.java"));
+        assertEquals(trees.read(root).find("test").id(),
+                     trees.read(changed).find("test").id());
+        Tree src = trees.read(trees.read(changed).find("src").id());
+        assertEquals(trees.read(trees.read(root).find("src").id())
+                     .find("b").id(), src.find("b").id());
+        assertNull(trees.get(changed, "src/a"));
+        assertNull(trees.get(changed, "src/a/A.java/x"));
+        assertEquals(root, trees.update(changed, files("0", "src/a/A.java")));
+        assertEquals(root, new TreeStore(dir).update(root,
+            new TreeMap<String, ObjectId>()));
+    }
+
+    @Test
+    public void replacesFilesByDirectories() throws IOException {
+        TreeStore trees =
+            new TreeStore(Files.createTempDirectory("trees").toFile());
+        ObjectId root = trees.update(Tree.EMPTY.id(),
+                                     files("0", "a", "d/x", "d/e/y"));
+        TreeMap<String, ObjectId> changes = files("1", "a/b", "d");
+        changes.put("a", null);
+        changes.put("d/x", null);
+        changes.put("d/e/y", null);
+        ObjectId changed = trees.update(root, changes);
+        assertEquals(changes.subMap("a/b", true, "a/b", true).keySet(),
+                     trees.flatten(changed).headMap("d").keySet());
+        assertEquals(ObjectId.hash("d", "1"), trees.get(changed, "d"));
+        TreeMap<String, ObjectId> gone = new TreeMap<String, ObjectId>();
+        gone.put("a/b", null);
+        gone.put("d", null);
+        assertEquals(Tree.EMPTY.id(), trees.update(changed, gone));
+    }
+
+    @Test
+    public void pagesLargeDirectories() throws IOException {
+        File dir = Files.createTempDirectory("trees").toFile();
+        TreeStore trees = new TreeStore(dir);
+        String[] paths = new String[5000];
+        for (int i = 0; i < paths.length; i += 1) {
+            paths[i] = "wide/file" + i;
+        }
+        TreeMap<String, ObjectId> all = files("0", paths);
+        ObjectId root = trees.update(Tree.EMPTY.id(), all);
+        ObjectId wide = trees.read(root).find("wide").id();
+        assertTrue(trees.read(wide).height() > 0);
+        assertTrue(trees.leaves(wide).size() > 20);
+        assertEquals(all, trees.flatten(root));
+        assertEquals(ObjectId.hash("wide/file4321", "0"),
+                     trees.get(root, "wide/file4321"));
+        int stored = dir.list().length;
+        TreeMap<String, ObjectId> changes = files("1", "wide/file17");
+        changes.put("wide/file4321", null);
+        ObjectId changed = trees.update(root, changes);
+        assertTrue(dir.list().length - stored
+                   <= 2 * (trees.read(wide).height() + 1) + 1);
+        assertNull(trees.get(changed, "wide/file4321"));
+        all.putAll(changes);
+        all.remove("wide/file4321");
+        assertEquals(all, trees.flatten(changed));
+        assertEquals(changed, new TreeStore(Files.createTempDirectory(
+            "trees").toFile()).update(Tree.EMPTY.id(), all));
+        assertEquals("[wide/file17 MODIFIED UNCHANGED, "
+                     + "wide/file4321 DELETED UNCHANGED]",
+                     TreeDiff.diff(trees, root, changed).toString());
+    }
+
+    @Test
+    public void updatesPagesAsIfRebuilt() throws IOException {
+        TreeStore trees =
+            new TreeStore(Files.createTempDirectory("trees").toFile());
+        Random random = new Random(18);
+        TreeMap<String, ObjectId> all = new TreeMap<String, ObjectId>();
+        ObjectId root = Tree.EMPTY.id();
+        for (int round = 0; round < 40; round += 1) {
+            TreeMap<String, ObjectId> changes =
+                new TreeMap<String, ObjectId>();
+            int n = round == 0 ? 20000 : 1 + random.nextInt(300);
+            for (int i = 0; i < n; i += 1) {
+                String path = "d/f" + random.nextInt(30000);
+                changes.put(path, random.nextInt(3) == 0 ? null
+                            : ObjectId.hash(path, "" + round));
+            }
+            if (round == 39) {
+                for (String path : all.keySet()) {
+                    changes.put(path, null);
+                }
+                changes.putAll(files("x", "d/f1", "d/f2", "d/f3"));
+            }
+            root = trees.update(root, changes);
+            for (String path : changes.keySet()) {
+                if (changes.get(path) == null) {
+                    all.remove(path);
+                } else {
+                    all.put(path, changes.get(path));
+                }
+            }
+            assertEquals(all, trees.flatten(root));
+            assertEquals(new TreeStore(Files.createTempDirectory(
+                "trees").toFile()).update(Tree.EMPTY.id(), all), root);
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(textui.runClasses(TreeStoreTest.class));
+    }
+
+}
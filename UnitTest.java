@@ -16,6 +16,18 @@ public class UnitTest {
         textui.runClasses(GitletTest.class);
         textui.runClasses(GitletTest2.class);
         textui.runClasses(GitletTest3.class);
+        textui.runClasses(PackFileTest.class);
+        textui.runClasses(ObjectIdTest.class);
+        textui.runClasses(IdIndexTest.class);
+        textui.runClasses(MessageIndexTest.class);
+        textui.runClasses(CommitGraphTest.class);
+        textui.runClasses(TreeDiffTest.class);
+        textui.runClasses(TreeStoreTest.class);
+        textui.runClasses(BlobCodecTest.class);
+        textui.runClasses(DeltaTest.class);
+        textui.runClasses(ChunkerTest.class);
+        textui.runClasses(TraceTest.class);
+        textui.runClasses(WatcherTest.class);
     }
 
     /** A dummy test to avoid complaint. */
@@ -1,8 +1,13 @@
 package gitlet;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
@@ -33,22 +38,30 @@ class Utils {
                     throw new IllegalArgumentException("improper type to sha1");
                 }
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
+            return toHex(md.digest());
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
         }
     }
 
+    /** Returns BYTES as a string of hexadecimal digits. */
+    private static String toHex(byte[] bytes) {
+        Formatter result = new Formatter();
+        for (byte b : bytes) {
+            result.format("%02x", b);
+        }
+        return result.toString();
+    }
+
     /** Returns the SHA-1 hash of the concatenation of the strings in
      *  VALS. */
     static String sha1(List<Object> vals) {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
+    /** Size of the buffers used to hash and copy files. */
+    static final int BUFFER_SIZE = 1 << 16;
+
     /* FILE DELETION */
 
     /** Deletes FILE if it exists and is not a directory.  Returns true
@@ -84,7 +97,9 @@ class Utils {
             throw new IllegalArgumentException("must be a normal file");
         }
         try {
-            return Files.readAllBytes(file.toPath());
+            byte[] result = Files.readAllBytes(file.toPath());
+            Trace.count(Trace.Counter.BYTES_READ, result.length);
+            return result;
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -99,11 +114,71 @@ class Utils {
                     new IllegalArgumentException("cannot overwrite directory");
             }
             Files.write(file.toPath(), bytes);
+            Trace.count(Trace.Counter.BYTES_WRITTEN, bytes.length);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write the rest of the contents of IN to FILE, creating or
+     *  overwriting it as needed, BUFFER_SIZE bytes at a time, and close
+     *  IN.  Throws IllegalArgumentException in case of problems. */
+    static void writeContents(File file, InputStream in) {
+        if (file.isDirectory()) {
+            throw new IllegalArgumentException("cannot overwrite directory");
+        }
+        try (InputStream source = in;
+             OutputStream out = new FileOutputStream(file)) {
+            copy(source, out);
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
     }
 
+    /** Copies the rest of IN to OUT, BUFFER_SIZE bytes at a time, and
+     *  returns the number of bytes copied. */
+    static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+            total += n;
+        }
+        Trace.count(Trace.Counter.BYTES_READ, total);
+        Trace.count(Trace.Counter.BYTES_WRITTEN, total);
+        return total;
+    }
+
+    /** Transfers the COUNT bytes of IN starting at POSITION to OUT,
+     *  channel to channel, so that where the platform allows the bytes
+     *  never enter the Java heap. */
+    static void transfer(FileChannel in, long position, long count,
+                         WritableByteChannel out) throws IOException {
+        Trace.count(Trace.Counter.BYTES_READ, count);
+        Trace.count(Trace.Counter.BYTES_WRITTEN, count);
+        while (count > 0) {
+            long n = in.transferTo(position, count, out);
+            if (n <= 0) {
+                throw new IOException("short transfer");
+            }
+            position += n;
+            count -= n;
+        }
+    }
+
+    /** Return the entire contents of FILE as a String.  FILE must
+     *  be a normal file.  Throws IllegalArgumentException
+     *  in case of problems. */
+    static String readContentsAsString(File file) {
+        return new String(readContents(file), StandardCharsets.UTF_8);
+    }
+
+    /** Write STR to FILE, creating or overwriting it as needed.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static void writeContents(File file, String str) {
+        writeContents(file, str.getBytes(StandardCharsets.UTF_8));
+    }
+
     /* DIRECTORIES */
 
     /** Filter out all but plain files. */
@@ -0,0 +1,265 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/** Keeps the SHA1s of the files of a working directory up to date for
+ *  a long-running process, watching it through a WatchService.  The
+ *  directory is scanned in full once; after that, each path the file
+ *  system reports changed is marked dirty, and a scan rehashes only
+ *  the dirty paths, so that it costs in proportion to what changed.
+ *
+ *  Events arrive a little after the changes that cause them, so before
+ *  using the dirty paths the first scan of each command creates a file
+ *  in .gitlet, which is watched too, and waits for its event.  Later
+ *  scans of the same command skip that wait, relying on the command to
+ *  mark dirty the paths it writes itself.  Linux's service reads the
+ *  events of every directory from one inotify queue, in the order the
+ *  changes were made, and signals each key as its first event comes.
+ *  So once that file's event has been seen, every change made before
+ *  the scan started has reached a key that is waiting to be taken.
+ *  That may be behind the key of .gitlet, which the command's own
+ *  writes there may have signalled earlier, so every waiting key is
+ *  then taken as well.  Other services, which watch each directory
+ *  apart, give no such order, so the watcher refuses to start on them.
+ *  If the events overflow, or that file's event does not come soon
+ *  enough, changes may have been missed, and the directory is scanned
+ *  in full again.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class Watcher implements AutoCloseable {
+    /** Prefix of the names of the files marking where a scan began. */
+    static final String SYNC = "watch-sync-";
+    /** Milliseconds a scan waits for the events before it. */
+    private static final long SYNC_MILLIS = 1000;
+    /** Class of the service whose events come in order. */
+    private static final String ORDERED = "sun.nio.fs.LinuxWatchService";
+
+    /** A watcher of the working directory DIR, whose gitlet directory
+     *  is DIR/.gitlet, and of every directory below it but that one and
+     *  those reached through symbolic links.  Throws IOException if the
+     *  platform's service does not report events in order. */
+    Watcher(File dir) throws IOException {
+        _root = dir.toPath().toAbsolutePath().normalize();
+        _gitlet = _root.resolve(".gitlet");
+        _service = FileSystems.getDefault().newWatchService();
+        if (!_service.getClass().getName().equals(ORDERED)) {
+            _service.close();
+            throw new IOException("file events are not ordered");
+        }
+        _syncKey = _gitlet.register(_service,
+                                    StandardWatchEventKinds.ENTRY_CREATE);
+        registerAll(_root);
+    }
+
+    /** Starts a command, whose first scan waits for the events of the
+     *  changes made before it. */
+    void begin() {
+        _synced = false;
+    }
+
+    /** Marks dirty PATH, which the current command has just written or
+     *  deleted. */
+    void touched(String path) {
+        _dirty.add(path);
+    }
+
+    /** Returns a map of the path of every plain file in or below the
+     *  working directory to the SHA1 of its contents, as TREE's
+     *  scanAll would, hashing through TREE only the files changed since
+     *  the last scan.  The map is a view of the latest snapshot, which
+     *  must not be kept past the next scan. */
+    SortedMap<String, ObjectId> scan(WorkingTree tree) {
+        boolean synced = _synced;
+        _synced = true;
+        if (!(synced || sync()) || _snapshot == null) {
+            if (_overflow) {
+                try {
+                    registerAll(_root);
+                } catch (IOException excp) {
+                    _snapshot = null;
+                    return tree.scanAll();
+                }
+            }
+            _dirty.clear();
+            _overflow = false;
+            _snapshot = tree.scanAll();
+        } else if (!_dirty.isEmpty()) {
+            TreeSet<String> names = new TreeSet<String>();
+            for (String path : _dirty) {
+                _snapshot.remove(path);
+                _snapshot.subMap(path + "/", path + "0").clear();
+                Path file = _root.resolve(path);
+                if (!(Files.isSymbolicLink(file) && Files.isDirectory(file))) {
+                    names.addAll(tree.files(path));
+                }
+            }
+            _dirty.clear();
+            _snapshot.putAll(tree.hashFiles(names.toArray(new String[0])));
+        }
+        return Collections.unmodifiableSortedMap(_snapshot);
+    }
+
+    /** Marks dirty the paths changed since the last call, returning
+     *  false if some changes may have been missed. */
+    private boolean sync() {
+        _syncs += 1;
+        String marker = SYNC + _syncs;
+        Path sentinel = _gitlet.resolve(marker);
+        try {
+            Files.createFile(sentinel);
+        } catch (IOException excp) {
+            return false;
+        }
+        try {
+            long deadline = System.currentTimeMillis() + SYNC_MILLIS;
+            while (true) {
+                long wait = deadline - System.currentTimeMillis();
+                WatchKey key = wait <= 0 ? null
+                    : _service.poll(wait, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    return false;
+                }
+                if (key == _syncKey) {
+                    boolean synced = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        synced |= event.context() != null
+                            && event.context().toString().equals(marker);
+                    }
+                    key.reset();
+                    if (synced) {
+                        drain();
+                        return !_overflow;
+                    }
+                } else {
+                    record(key);
+                }
+            }
+        } catch (InterruptedException excp) {
+            return false;
+        } finally {
+            try {
+                Files.deleteIfExists(sentinel);
+            } catch (IOException excp) {
+                _overflow = true;
+            }
+        }
+    }
+
+    /** Marks dirty the paths changed in the events of every key
+     *  waiting to be taken. */
+    private void drain() {
+        for (WatchKey key = _service.poll(); key != null;
+             key = _service.poll()) {
+            if (key == _syncKey) {
+                key.pollEvents();
+                key.reset();
+            } else {
+                record(key);
+            }
+        }
+    }
+
+    /** Marks dirty the paths changed in the events of KEY, watching
+     *  the directories created. */
+    private void record(WatchKey key) {
+        Path dir = _dirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                || dir == null) {
+                _overflow = true;
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (path.equals(_gitlet)) {
+                continue;
+            }
+            _dirty.add(_root.relativize(path).toString()
+                       .replace(File.separatorChar, '/'));
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    registerAll(path);
+                } catch (IOException excp) {
+                    _overflow = true;
+                }
+            }
+        }
+        if (!key.reset()) {
+            _dirs.remove(key);
+        }
+    }
+
+    /** Watches DIR and every directory below it, other than .gitlet,
+     *  without following symbolic links. */
+    private void registerAll(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(
+                    Path subdir, BasicFileAttributes attrs)
+                throws IOException {
+                if (subdir.equals(_gitlet)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                _dirs.put(subdir.register(_service,
+                              StandardWatchEventKinds.ENTRY_CREATE,
+                              StandardWatchEventKinds.ENTRY_DELETE,
+                              StandardWatchEventKinds.ENTRY_MODIFY),
+                          subdir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file,
+                                                   IOException excp) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        _service.close();
+    }
+
+    /** The working directory. */
+    private final Path _root;
+    /** Its gitlet directory. */
+    private final Path _gitlet;
+    /** The service reporting changes. */
+    private final WatchService _service;
+    /** The key of the gitlet directory, watched for sync markers. */
+    private final WatchKey _syncKey;
+    /** The directory of each key but _syncKey. */
+    private final HashMap<WatchKey, Path> _dirs =
+        new HashMap<WatchKey, Path>();
+    /** Paths changed since the last scan. */
+    private final TreeSet<String> _dirty = new TreeSet<String>();
+    /** True iff changes may have gone unreported since the last full
+     *  scan. */
+    private boolean _overflow;
+    /** The working files and their SHA1s as of the last scan, or null
+     *  before the first. */
+    private TreeMap<String, ObjectId> _snapshot;
+    /** True iff the current command has waited for the events of the
+     *  changes made before it. */
+    private boolean _synced;
+    /** Number of syncs made. */
+    private int _syncs;
+}
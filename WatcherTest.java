@@ -0,0 +1,120 @@
+package gitlet;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import ucb.junit.textui;
+
+public class WatcherTest {
+
+    /** Returns WATCHER's scan through TREE at the start of a command. */
+    private static SortedMap<String, ObjectId> command(Watcher watcher,
+                                                      WorkingTree tree) {
+        watcher.begin();
+        return watcher.scan(tree);
+    }
+
+    @Test
+    public void keepsUpWithChanges() throws IOException {
+        File gitlet = new File(".gitlet");
+        boolean made = gitlet.mkdir();
+        File dir = new File("watchtest");
+        File a = new File(dir, "a.txt");
+        File b = new File(dir, "sub/b.txt");
+        dir.mkdir();
+        Utils.writeContents(a, "one");
+        File index = Files.createTempFile("index", "").toFile();
+        WorkingTree tree = new WorkingTree(new File("."),
+                                           new StatCache(index), 1);
+        try (Watcher watcher = new Watcher(new File("."))) {
+            assertEquals(tree.scanAll(), command(watcher, tree));
+            Utils.writeContents(a, "version two");
+            b.getParentFile().mkdir();
+            Utils.writeContents(b, "new");
+            assertEquals(tree.scanAll(), command(watcher, tree));
+            assertTrue(watcher.scan(tree).containsKey("watchtest/sub/b.txt"));
+            a.delete();
+            assertEquals(tree.scanAll(), command(watcher, tree));
+            assertFalse(watcher.scan(tree).containsKey("watchtest/a.txt"));
+        } finally {
+            b.delete();
+            b.getParentFile().delete();
+            dir.delete();
+            index.delete();
+            if (made) {
+                gitlet.delete();
+            }
+        }
+    }
+
+    @Test
+    public void seesEditsQueuedBehindGitletWrites() throws IOException {
+        File gitlet = new File(".gitlet");
+        boolean made = gitlet.mkdir();
+        File dir = new File("watchtest2");
+        File a = new File(dir, "a.txt");
+        File note = new File(gitlet, "watchtest-note");
+        dir.mkdir();
+        Utils.writeContents(a, "one");
+        File index = Files.createTempFile("index", "").toFile();
+        WorkingTree tree = new WorkingTree(new File("."),
+                                           new StatCache(index), 1);
+        try (Watcher watcher = new Watcher(new File("."))) {
+            command(watcher, tree);
+            for (int round = 0; round < 100; round += 1) {
+                Utils.writeContents(note, "before " + round);
+                Utils.writeContents(a, "version " + round);
+                Utils.writeContents(note, "after " + round);
+                assertEquals(tree.scanAll(), command(watcher, tree));
+            }
+        } finally {
+            a.delete();
+            dir.delete();
+            note.delete();
+            index.delete();
+            if (made) {
+                gitlet.delete();
+            }
+        }
+    }
+
+    @Test
+    public void syncsOncePerCommand() throws IOException {
+        File gitlet = new File(".gitlet");
+        boolean made = gitlet.mkdir();
+        File dir = new File("watchtest3");
+        File a = new File(dir, "a.txt");
+        dir.mkdir();
+        Utils.writeContents(a, "one");
+        File index = Files.createTempFile("index", "").toFile();
+        WorkingTree tree = new WorkingTree(new File("."),
+                                           new StatCache(index), 1);
+        try (Watcher watcher = new Watcher(new File("."))) {
+            ObjectId one = command(watcher, tree).get("watchtest3/a.txt");
+            Utils.writeContents(a, "two");
+            assertEquals(one, watcher.scan(tree).get("watchtest3/a.txt"));
+            watcher.touched("watchtest3/a.txt");
+            assertEquals(tree.scanAll(), watcher.scan(tree));
+            Utils.writeContents(a, "three");
+            assertEquals(tree.scanAll(), command(watcher, tree));
+        } finally {
+            a.delete();
+            dir.delete();
+            index.delete();
+            if (made) {
+                gitlet.delete();
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(textui.runClasses(WatcherTest.class));
+    }
+
+}
@@ -0,0 +1,275 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.PatternSyntaxException;
+
+/** Scans the working directory, hashing its plain files in parallel
+ *  on a fork-join pool. The stat cache is consulted first, so only
+ *  files that changed since they were last hashed are read.  Files in
+ *  subdirectories are named by their paths from the working directory,
+ *  with components separated by '/'; the .gitlet directory is never
+ *  scanned.
+ *  @author Ruihan Zhao and Emily Pedersen. */
+class WorkingTree {
+    /** Number of files below which a scan task hashes its files
+     *  itself instead of splitting. */
+    private static final int SPLIT = 8;
+
+    /** A scanner of the working directory DIR that hashes files
+     *  through STATS on a pool of THREADS threads.  Throws
+     *  IllegalArgumentException unless THREADS is at least 1. */
+    WorkingTree(File dir, StatCache stats, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("need at least one thread");
+        }
+        _dir = dir;
+        _stats = stats;
+        _threads = threads;
+    }
+
+    /** Has WATCHER keep track of the working files from now on, so
+     *  that scans and lookups rehash only the files changed since the
+     *  last. */
+    void watch(Watcher watcher) {
+        _watcher = watcher;
+    }
+
+    /** Returns a map of the path of every plain file in or below the
+     *  working directory to the SHA1 of its contents, which the caller
+     *  must not change. */
+    SortedMap<String, ObjectId> scan() {
+        return _watcher != null ? _watcher.scan(this) : scanAll();
+    }
+
+    /** Returns a map of the path of every plain file in or below the
+     *  working directory to the SHA1 of its contents, listing the
+     *  directory afresh. */
+    TreeMap<String, ObjectId> scanAll() {
+        List<String> names = new ArrayList<String>();
+        list(_dir, "", names);
+        return hashFiles(names.toArray(new String[names.size()]));
+    }
+
+    /** Adds to NAMES the path, starting with PREFIX, of every plain file
+     *  in or below DIR, other than in .gitlet, without following
+     *  symbolic links to directories. */
+    private void list(File dir, String prefix, List<String> names) {
+        String[] children = dir.list();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (String child : children) {
+            File file = new File(dir, child);
+            if (file.isFile()) {
+                names.add(prefix + child);
+            } else if (file.isDirectory()
+                       && !(prefix.isEmpty() && child.equals(".gitlet"))
+                       && !Files.isSymbolicLink(file.toPath())) {
+                list(file, prefix + child + "/", names);
+            }
+        }
+    }
+
+    /** Returns the path of FILENAME from the working directory, or null
+     *  if it is the working directory itself, outside it, or in
+     *  .gitlet. */
+    String path(String fileName) {
+        Path root = _dir.toPath().toAbsolutePath().normalize();
+        Path path = root.resolve(fileName).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            return null;
+        }
+        Path relative = root.relativize(path);
+        if (relative.getName(0).toString().equals(".gitlet")) {
+            return null;
+        }
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+
+    /** Returns the paths of the working files FILENAME stands for: its
+     *  own if it is a plain file, and those of every plain file below
+     *  it if it is a directory, which may be the working directory
+     *  itself.  There are none if it is outside the working directory
+     *  or in .gitlet. */
+    List<String> files(String fileName) {
+        List<String> result = new ArrayList<String>();
+        Path root = _dir.toPath().toAbsolutePath().normalize();
+        Path path = root.resolve(fileName).normalize();
+        if (!path.startsWith(root)) {
+            return result;
+        }
+        String relative =
+            root.relativize(path).toString().replace(File.separatorChar, '/');
+        if (relative.equals(".gitlet") || relative.startsWith(".gitlet/")) {
+            return result;
+        }
+        File file = path.toFile();
+        if (file.isFile() && !relative.isEmpty()) {
+            result.add(relative);
+        } else if (file.isDirectory()) {
+            list(file, relative.isEmpty() ? "" : relative + "/", result);
+        }
+        return result;
+    }
+
+    /** Returns true iff PATTERN is a glob rather than a path. */
+    static boolean isGlob(String pattern) {
+        return pattern.chars().anyMatch(c -> "*?[{".indexOf(c) >= 0);
+    }
+
+    /** Returns those of the paths NAMES, from the working directory,
+     *  matched by the glob PATTERN, in which '*' does not match across
+     *  '/' and '**' does.  Throws PatternSyntaxException if PATTERN is
+     *  malformed. */
+    static List<String> glob(String pattern, List<String> names) {
+        String glob = pattern.startsWith("./") ? pattern.substring(2)
+            : pattern;
+        PathMatcher matcher =
+            FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        List<String> result = new ArrayList<String>();
+        for (String name : names) {
+            if (matcher.matches(Paths.get(name))) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /** Deletes the working file PATH, as returned by path, and then
+     *  each of its directories that it leaves empty.  Returns true iff
+     *  the file was deleted.  Throws IllegalArgumentException unless
+     *  the working directory contains .gitlet. */
+    boolean delete(String path) {
+        if (!new File(_dir, ".gitlet").isDirectory()) {
+            throw new IllegalArgumentException("not .gitlet working directory");
+        }
+        File file = new File(_dir, path);
+        if (file.isDirectory() || !file.delete()) {
+            return false;
+        }
+        touched(path);
+        File parent = file.getParentFile();
+        for (int k = path.indexOf('/'); k >= 0; k = path.indexOf('/', k + 1)) {
+            if (!parent.delete()) {
+                break;
+            }
+            parent = parent.getParentFile();
+        }
+        return true;
+    }
+
+    /** Marks the working file PATH, just written or deleted, as
+     *  changed, so that a watcher rehashes it in the next scan. */
+    void touched(String path) {
+        if (_watcher != null) {
+            _watcher.touched(path);
+        }
+    }
+
+    /** Returns a map of each of the working files NAMES to the SHA1
+     *  of its contents, leaving out any that is not a plain file when
+     *  watched. */
+    TreeMap<String, ObjectId> hash(String[] names) {
+        if (_watcher == null) {
+            return hashFiles(names);
+        }
+        SortedMap<String, ObjectId> all = _watcher.scan(this);
+        TreeMap<String, ObjectId> result = new TreeMap<String, ObjectId>();
+        for (String name : names) {
+            if (all.containsKey(name)) {
+                result.put(name, all.get(name));
+            }
+        }
+        return result;
+    }
+
+    /** Returns a map of each of the working files NAMES to the SHA1
+     *  of its contents, hashing those changed since they were last
+     *  hashed. */
+    TreeMap<String, ObjectId> hashFiles(String[] names) {
+        ObjectId[] shas = new ObjectId[names.length];
+        if (names.length <= SPLIT || _threads <= 1) {
+            new Hasher(names, shas, 0, names.length).compute();
+        } else {
+            pool().invoke(new Hasher(names, shas, 0, names.length));
+        }
+        TreeMap<String, ObjectId> result = new TreeMap<String, ObjectId>();
+        for (int i = 0; i < names.length; i += 1) {
+            result.put(names[i], shas[i]);
+        }
+        return result;
+    }
+
+    /** Returns the pool, creating it on first use, or null if this
+     *  tree has only one thread and work should be done in place. */
+    ForkJoinPool pool() {
+        if (_threads <= 1) {
+            return null;
+        }
+        if (_pool == null) {
+            _pool = new ForkJoinPool(_threads);
+        }
+        return _pool;
+    }
+
+    /** A task hashing a range of files. */
+    private class Hasher extends RecursiveTask<Void> {
+        /** Version of the serialized form, which is never used. */
+        private static final long serialVersionUID = 1L;
+
+        /** Hashes NAMES[FROM .. TO-1] into SHAS[FROM .. TO-1]. */
+        Hasher(String[] names, ObjectId[] shas, int from, int to) {
+            _names = names;
+            _shas = shas;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected Void compute() {
+            if (_to - _from <= SPLIT) {
+                for (int i = _from; i < _to; i += 1) {
+                    _shas[i] = _stats.sha(_names[i]);
+                }
+            } else {
+                int mid = (_from + _to) >>> 1;
+                invokeAll(new Hasher(_names, _shas, _from, mid),
+                          new Hasher(_names, _shas, mid, _to));
+            }
+            return null;
+        }
+
+        /** Names of the files. */
+        private final String[] _names;
+        /** SHA1s of the files. */
+        private final ObjectId[] _shas;
+        /** First file of this task. */
+        private final int _from;
+        /** Index just past the last file of this task. */
+        private final int _to;
+    }
+
+    /** The working directory. */
+    private final File _dir;
+    /** Cache of SHA1s of working files. */
+    private final StatCache _stats;
+    /** Number of hashing threads. */
+    private final int _threads;
+    /** The pool hashing files, or null if not yet needed. */
+    private ForkJoinPool _pool;
+    /** The watcher of the working files, or null if there is none. */
+    private Watcher _watcher;
+}